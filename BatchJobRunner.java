@@ -0,0 +1,157 @@
+package Swiftbot;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.util.*;
+import java.util.concurrent.*;
+
+// Non-interactive mode that draws shape programs read from a file, every file in a folder, or
+// standard input ("-"). Each line holds commands in the usual syntax (e.g. S-30&T-20-30-40);
+// blank lines and lines starting with '#' are skipped.
+//
+// A reader thread scans and validates the commands a little ahead of the robot and hands the
+// shapes over through a bounded queue, so a long queue never has to fit in memory and the robot
+// never waits for parsing. Each line is checked as a whole before any of its shapes are queued, so
+// a line with a bad command is skipped without drawing any of it.
+class BatchJobRunner {
+    private static final SwiftBotShapeDrawer.Shape END = new SwiftBotShapeDrawer.Square(0); // Marks the end of the input
+
+    private final String source; // File, folder or "-" for standard input
+    private final int lookAhead; // Shapes parsed ahead of the one being drawn
+
+    // Counters reported at the end
+    private volatile long linesRead = 0;
+    private volatile long commandsParsed = 0;
+    private volatile long linesRejected = 0;
+    private volatile long parseNanos = 0;
+    private volatile Exception readError = null;
+
+    BatchJobRunner(String source, int lookAhead) {
+        if (lookAhead <= 0) {
+            throw new IllegalArgumentException("Look-ahead must be positive: " + lookAhead);
+        }
+        this.source = source;
+        this.lookAhead = lookAhead;
+    }
+
+    // Method to draw every shape from the source and print the throughput at the end
+    void run() throws InterruptedException {
+        BlockingQueue<SwiftBotShapeDrawer.Shape> shapes = new ArrayBlockingQueue<>(lookAhead);
+        Thread reader = new Thread(() -> readShapes(shapes), "batch-reader");
+        reader.setDaemon(true);
+
+        long start = System.nanoTime();
+        reader.start();
+
+        long drawn = 0;
+        SwiftBotShapeDrawer.Shape shape = shapes.take();
+        while (shape != END) {
+            shape.draw();
+            drawn++;
+            SwiftBotShapeDrawer.Shape next = shapes.take();
+            if (next != END) {
+                SwiftBotShapeDrawer.moveBackwards(15); // Move backwards to start the next shape
+            }
+            shape = next;
+        }
+        reader.join();
+        double minutes = (System.nanoTime() - start) / 60e9;
+
+        System.out.println("\nBatch complete: " + source);
+        if (readError != null) {
+            System.out.println("- Stopped early, error reading input: " + readError.getMessage());
+        }
+        System.out.println("- Lines read: " + linesRead + ", commands parsed: " + commandsParsed + ", lines rejected: " + linesRejected);
+        System.out.println("- Shapes drawn: " + drawn);
+        System.out.printf("- Throughput: %.2f shapes per minute%n", minutes > 0 ? drawn / minutes : 0);
+        System.out.printf("- Parse rate: %.0f commands per second%n", parseNanos > 0 ? commandsParsed * 1e9 / parseNanos : 0);
+    }
+
+    // Method run by the reader thread: scan and validate every line, queueing the shapes of valid lines
+    private void readShapes(BlockingQueue<SwiftBotShapeDrawer.Shape> shapes) {
+        ShapeCommandBuffer program = new ShapeCommandBuffer();
+        JobValidator validator = SwiftBotShapeDrawer.getBackOffValidator();
+        Metrics metrics = SwiftBotShapeDrawer.getMetrics(); // Same stage timers as QR jobs
+        try {
+            for (Path file : inputFiles()) {
+                try (BufferedReader in = open(file)) {
+                    String label = file == null ? "stdin" : file.toString();
+                    int lineNumber = 0;
+                    String line;
+                    while ((line = in.readLine()) != null) {
+                        lineNumber++;
+                        linesRead++;
+                        String trimmed = line.trim();
+                        if (trimmed.isEmpty() || trimmed.startsWith("#")) {
+                            continue;
+                        }
+
+                        long t = System.nanoTime();
+                        ShapeCommandScanner.scan(trimmed, Integer.MAX_VALUE, program);
+                        long parsed = System.nanoTime() - t;
+                        parseNanos += parsed;
+                        metrics.timer("parse").recordMs(parsed / 1e6);
+                        commandsParsed += program.size();
+
+                        long stage = Metrics.now();
+                        JobValidator.Report report = validator.checkShapes(program, Integer.MAX_VALUE);
+                        metrics.timer("validate").record(stage);
+                        stage = Metrics.now();
+                        validator.checkPlan(report);
+                        metrics.timer("plan").record(stage);
+                        if (!report.isValid()) {
+                            linesRejected++;
+                            System.out.println("- Skipped line " + lineNumber + " of " + label + ", nothing on it was drawn:");
+                            SwiftBotShapeDrawer.rejectJob(report);
+                            continue;
+                        }
+                        for (SwiftBotShapeDrawer.Shape shape : report.shapes) {
+                            shapes.put(shape); // Waits while the look-ahead is full
+                        }
+                    }
+                }
+            }
+        } catch (IOException e) {
+            readError = e;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            try {
+                shapes.put(END);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    // Method to list the files to read, in name order for a folder (null means standard input)
+    private List<Path> inputFiles() throws IOException {
+        List<Path> files = new ArrayList<>();
+        if (source.equals("-")) {
+            files.add(null);
+            return files;
+        }
+        Path path = Paths.get(source);
+        if (Files.isDirectory(path)) {
+            try (DirectoryStream<Path> stream = Files.newDirectoryStream(path)) {
+                for (Path file : stream) {
+                    if (Files.isRegularFile(file)) {
+                        files.add(file);
+                    }
+                }
+            }
+            Collections.sort(files);
+        } else {
+            files.add(path);
+        }
+        return files;
+    }
+
+    private static BufferedReader open(Path file) throws IOException {
+        if (file == null) {
+            return new BufferedReader(new InputStreamReader(System.in, StandardCharsets.UTF_8));
+        }
+        return Files.newBufferedReader(file, StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,160 @@
+package Swiftbot;
+
+// Measures a robot's move and turn rates with its ultrasound sensor and fits a CalibrationProfile.
+// Place the robot about 50 cm from a flat wall, facing it.
+//
+// Moves: drive towards the wall for a few different times, measuring how much closer it got
+// after each, and fit distance = (time - start-up) / rate.
+// Turns: spin on the spot in short equal pulses, measuring after each one. The distance to the
+// wall is smallest when facing it square on, so the number of pulses between two minima (one
+// full turn, refined by fitting a parabola around each minimum) gives the angle per pulse.
+// Repeating with different pulse lengths fits time = start-up + angle * rate.
+class CalibrationEngine {
+    private static final int[] MOVE_PULSES_MS = {400, 800, 1200, 1600}; // Forward move times to try
+    private static final int[] TURN_PULSES_MS = {80, 120, 160}; // Spin pulse times to try
+    private static final int SETTLE_MS = 300; // Wait before each reading so the robot has stopped
+    private static final int READINGS = 3; // Readings averaged per measurement
+
+    private final MotionBackend motion; // Robot being calibrated
+    private final RangeSensor sensor; // Its distance sensor
+    private final CalibrationProfile start; // Current profile, used to size the spins
+
+    CalibrationEngine(MotionBackend motion, RangeSensor sensor, CalibrationProfile start) {
+        this.motion = motion;
+        this.sensor = sensor;
+        this.start = start;
+    }
+
+    // Method to run the whole test pattern and return the fitted profile
+    CalibrationProfile run() throws InterruptedException {
+        double[] move = calibrateMoves();
+        double[] turn = calibrateTurns();
+        return new CalibrationProfile(1 / move[0], Math.max(0, -move[1] / move[0]), turn[0], Math.max(0, turn[1]));
+    }
+
+    // Method to fit distance (cm) against move time (ms); returns {slope, intercept}
+    private double[] calibrateMoves() throws InterruptedException {
+        int speed = SwiftBotShapeDrawer.LEFT_MOTOR_SPEED;
+        double[] times = new double[MOVE_PULSES_MS.length];
+        double[] distances = new double[MOVE_PULSES_MS.length];
+        for (int i = 0; i < MOVE_PULSES_MS.length; i++) {
+            double before = measure();
+            motion.move(speed, speed, MOVE_PULSES_MS[i]); // Drive towards the wall
+            double after = measure();
+            motion.move(-speed, -speed, MOVE_PULSES_MS[i]); // Back to where it started
+            times[i] = MOVE_PULSES_MS[i];
+            distances[i] = before - after;
+            System.out.printf("- Move %d ms: %.1f cm%n", MOVE_PULSES_MS[i], distances[i]);
+        }
+        return fitLine(times, distances);
+    }
+
+    // Method to fit turn time (ms) against angle (degrees); returns {slope, intercept}
+    private double[] calibrateTurns() throws InterruptedException {
+        double[] angles = new double[TURN_PULSES_MS.length];
+        double[] times = new double[TURN_PULSES_MS.length];
+        for (int i = 0; i < TURN_PULSES_MS.length; i++) {
+            int pulse = TURN_PULSES_MS[i];
+            int pulsesPerTurn = (int) Math.ceil(start.turnTime(360) / (double) pulse); // Expected pulses for a full turn
+            double[] readings = new double[pulsesPerTurn * 5]; // Room for the robot being much slower than expected
+
+            // Spin until the wall has been passed twice after first turning away from it
+            int[] windows = null;
+            int count = 0;
+            while (windows == null) {
+                if (count == readings.length) {
+                    throw new IllegalStateException("Could not find the wall while turning; is it in front of the robot?");
+                }
+                if (count > 0) {
+                    motion.move(-50, 50, pulse); // Turn left
+                }
+                readings[count++] = measure();
+                windows = facingWindows(readings, count);
+            }
+
+            double first = minimum(readings, windows[0], windows[1]);
+            double second = minimum(readings, windows[2], windows[3]);
+            angles[i] = 360 / (second - first);
+            times[i] = pulse;
+            System.out.printf("- Turn %d ms: %.1f degrees%n", pulse, angles[i]);
+        }
+        return fitLine(angles, times);
+    }
+
+    // Method to find two complete stretches of readings taken while facing the wall, each with
+    // readings facing away on both sides; returns {start1, end1, start2, end2} or null if not seen yet
+    private static int[] facingWindows(double[] readings, int count) {
+        double nearest = Double.MAX_VALUE;
+        for (int k = 0; k < count; k++) {
+            nearest = Math.min(nearest, readings[k]);
+        }
+        double threshold = nearest * 1.5; // Roughly 50 degrees either side of square on
+
+        int[] windows = new int[4];
+        int found = 0, start = -1;
+        boolean seenAway = false;
+        for (int k = 0; k < count; k++) {
+            boolean facing = readings[k] <= threshold;
+            if (facing && seenAway && start < 0) {
+                start = k;
+            } else if (!facing) {
+                if (start >= 0) {
+                    windows[found * 2] = start;
+                    windows[found * 2 + 1] = k - 1;
+                    if (++found == 2) {
+                        return windows;
+                    }
+                    start = -1;
+                }
+                seenAway = true;
+            }
+        }
+        return null;
+    }
+
+    // Method to find where the readings are smallest between two indexes, to a fraction of a pulse
+    private static double minimum(double[] readings, int from, int to) {
+        from = Math.max(0, from);
+        to = Math.min(readings.length - 1, to);
+        int best = from;
+        for (int k = from; k <= to; k++) {
+            if (readings[k] < readings[best]) {
+                best = k;
+            }
+        }
+        if (best == 0 || best == readings.length - 1) {
+            return best;
+        }
+        // Fit a parabola through the lowest reading and its neighbours
+        double left = readings[best - 1], middle = readings[best], right = readings[best + 1];
+        double curve = left - 2 * middle + right;
+        return curve > 0 ? best + 0.5 * (left - right) / curve : best;
+    }
+
+    // Method to average a few sensor readings once the robot has stopped
+    private double measure() throws InterruptedException {
+        motion.pause(SETTLE_MS);
+        double total = 0;
+        for (int i = 0; i < READINGS; i++) {
+            total += sensor.distanceCm();
+        }
+        return total / READINGS;
+    }
+
+    // Method to fit y = slope * x + intercept by least squares; returns {slope, intercept}
+    static double[] fitLine(double[] x, double[] y) {
+        int n = x.length;
+        double meanX = 0, meanY = 0;
+        for (int i = 0; i < n; i++) {
+            meanX += x[i] / n;
+            meanY += y[i] / n;
+        }
+        double sxy = 0, sxx = 0;
+        for (int i = 0; i < n; i++) {
+            sxy += (x[i] - meanX) * (y[i] - meanY);
+            sxx += (x[i] - meanX) * (x[i] - meanX);
+        }
+        double slope = sxy / sxx;
+        return new double[] {slope, meanY - slope * meanX};
+    }
+}
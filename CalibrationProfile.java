@@ -0,0 +1,95 @@
+package Swiftbot;
+
+import java.io.*;
+import java.nio.file.*;
+import java.util.Properties;
+
+// Movement calibration for one robot.
+// Move and turn times are modelled as a start-up delay plus a rate:
+//   move time (ms) = moveStartupMs + distance (cm) * moveTimePerCm
+//   turn time (ms) = turnStartupMs + angle (degrees) * turnTimePerDegree
+// The defaults use the original 100 ms/cm and 643 ms per 90 degrees with no start-up delay. They
+// don't reproduce the old per-turn corrections (a 15% wider last square turn, and fixed triangle
+// turns of 666/999/1065 ms whatever the sides), as every turn is now worked out from the shape's
+// geometry; a robot that relied on those corrections needs calibrating. A measured profile is
+// written by CalibrationEngine and loaded from a properties file when the program starts.
+class CalibrationProfile {
+    static final String DEFAULT_FILE = "swiftbot-calibration.properties";
+
+    final double moveTimePerCm; // Time (ms) to drive 1 cm at the normal motor speed
+    final double moveStartupMs; // Time (ms) lost at the start of each move
+    final double turnTimePerDegree; // Time (ms) to turn 1 degree on the spot
+    final double turnStartupMs; // Time (ms) lost at the start of each turn
+
+    CalibrationProfile(double moveTimePerCm, double moveStartupMs, double turnTimePerDegree, double turnStartupMs) {
+        if (!(moveTimePerCm > 0 && turnTimePerDegree > 0)) {
+            throw new IllegalArgumentException("Move and turn rates must be positive");
+        }
+        this.moveTimePerCm = moveTimePerCm;
+        this.moveStartupMs = moveStartupMs;
+        this.turnTimePerDegree = turnTimePerDegree;
+        this.turnStartupMs = turnStartupMs;
+    }
+
+    // Method to get the profile built from the original move and 90 degree turn constants
+    static CalibrationProfile defaults() {
+        return new CalibrationProfile(SwiftBotShapeDrawer.MOVE_TIME_PER_CM, 0,
+                SwiftBotShapeDrawer.TURN_TIME_90_DEGREES / 90.0, 0);
+    }
+
+    // Method to get the time (ms) to drive a distance in cm
+    int moveTime(double distanceCm) {
+        return distanceCm <= 0 ? 0 : (int) Math.round(moveStartupMs + distanceCm * moveTimePerCm);
+    }
+
+    // Method to get the time (ms) to turn on the spot by an angle in degrees (either direction)
+    int turnTime(double degrees) {
+        double angle = Math.abs(degrees);
+        return angle <= 0 ? 0 : (int) Math.round(turnStartupMs + angle * turnTimePerDegree);
+    }
+
+    // Method to get the kinematic model for this robot's drive rates
+    DifferentialDriveModel driveModel() {
+        return new DifferentialDriveModel(moveTimePerCm, turnTimePerDegree * 90, SwiftBotShapeDrawer.LEFT_MOTOR_SPEED);
+    }
+
+    // Method to load a profile from a file, falling back to the defaults if there isn't one
+    static CalibrationProfile load(Path file) throws IOException {
+        if (!Files.exists(file)) {
+            return defaults();
+        }
+        Properties properties = new Properties();
+        try (Reader reader = Files.newBufferedReader(file)) {
+            properties.load(reader);
+        }
+        CalibrationProfile d = defaults();
+        return new CalibrationProfile(
+                read(properties, "moveTimePerCm", d.moveTimePerCm),
+                read(properties, "moveStartupMs", d.moveStartupMs),
+                read(properties, "turnTimePerDegree", d.turnTimePerDegree),
+                read(properties, "turnStartupMs", d.turnStartupMs));
+    }
+
+    // Method to save the profile to a file
+    void save(Path file) throws IOException {
+        Properties properties = new Properties();
+        properties.setProperty("moveTimePerCm", Double.toString(moveTimePerCm));
+        properties.setProperty("moveStartupMs", Double.toString(moveStartupMs));
+        properties.setProperty("turnTimePerDegree", Double.toString(turnTimePerDegree));
+        properties.setProperty("turnStartupMs", Double.toString(turnStartupMs));
+        try (Writer writer = Files.newBufferedWriter(file)) {
+            properties.store(writer, "SwiftBot movement calibration");
+        }
+    }
+
+    private static double read(Properties properties, String key, double fallback) {
+        String value = properties.getProperty(key);
+        return value == null ? fallback : Double.parseDouble(value.trim());
+    }
+
+    @Override
+    public String toString() {
+        return String.format("move %.2f ms/cm + %.0f ms, turn %.3f ms/degree + %.0f ms (90 degrees = %d ms)",
+                moveTimePerCm, moveStartupMs, turnTimePerDegree, turnStartupMs, turnTime(90));
+    }
+}
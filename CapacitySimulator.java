@@ -0,0 +1,270 @@
+package Swiftbot;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.util.*;
+
+// Discrete-event simulation of a robot working through drawing jobs on a virtual clock, for
+// answering "how many shapes per hour can one bot do?" without running the robot.
+// Each job (a QR payload, one per line of a trace file) goes through the same stages as on the robot:
+//   1. decode: the QR code is read, taking the configured decode latency
+//   2. check and plan: the real pre-flight check and trajectory planner run, and the robot time of
+//      the job is taken from the planned trajectories and path plan (with the current calibration);
+//      jobs that fail the check are rejected and never reach the robot
+//   3. execute: the robot draws the job, busy for the planned time
+// Two set-ups are compared for every decode latency:
+//   - sequential: like the interactive program, the robot scans, then draws, then scans the next code
+//   - pipelined: the next code is decoded while the robot draws (up to LOOK_AHEAD jobs ahead)
+// Jobs arrive at random (exponential gaps with the given mean), or back to back when the mean is 0.
+//
+// With --batch the trace is a batch file, replayed the way BatchJobRunner draws it: no QR codes to
+// decode, no limit on shapes per line or time per line, and a 15 cm back-off before every shape
+// but the first of the shift (also between lines). Lines that fail the check are skipped.
+// Nothing sleeps, so a whole shift is simulated in milliseconds.
+//
+// Usage: java Swiftbot.CapacitySimulator <trace file|-> <shift hours> <mean ms between jobs|0> <decode ms>[,<decode ms>...]
+//   e.g. java Swiftbot.CapacitySimulator jobs.txt 8 0 500,3000,10000
+//    or: java Swiftbot.CapacitySimulator --batch <batch file|-> <shift hours>
+public class CapacitySimulator {
+    private static final int LOOK_AHEAD = 16; // Jobs decoded ahead of the robot in pipelined mode
+    private static final long RANDOM_SEED = 1; // Fixed so runs can be compared
+
+    // Event types
+    private static final int ARRIVAL = 0;
+    private static final int DECODE_DONE = 1;
+    private static final int DRAW_DONE = 2;
+
+    private static final double[] REJECTED = {0, 0}; // Plan of a job that failed the pre-flight check
+
+    private final List<String> trace; // Job payloads, replayed in order and repeated to fill the shift
+    private final boolean batch; // Whether the trace is a batch file rather than QR payloads
+    private final Map<String, double[]> plans = new HashMap<>(); // Payload -> {robot ms, shapes}, planned once
+
+    // One job moving through the stages, with the virtual times (ms) it reached each of them
+    private static class Job {
+        String payload;
+        double arrived, decodeStarted, decoded, drawStarted;
+    }
+
+    // Something that happens at a point in virtual time
+    private static class Event {
+        final double time;
+        final long sequence; // Keeps events at the same time in the order they were scheduled
+        final int type;
+        final Job job;
+
+        Event(double time, long sequence, int type, Job job) {
+            this.time = time;
+            this.sequence = sequence;
+            this.type = type;
+            this.job = job;
+        }
+    }
+
+    // Results of one simulated shift
+    static class Result {
+        long jobs = 0; // Jobs finished within the shift
+        long rejected = 0; // Jobs that failed the pre-flight check, not drawn and not counted in jobs
+        long shapes = 0; // Shapes drawn by those jobs
+        double scannerBusyMs = 0; // Time spent decoding
+        double robotBusyMs = 0; // Time spent drawing
+        final QuantileSketch scanWaitMs = new QuantileSketch(1, 1e8, 0.01); // Arrival to start of decoding
+        final QuantileSketch drawWaitMs = new QuantileSketch(1, 1e8, 0.01); // Decoded to start of drawing
+    }
+
+    CapacitySimulator(List<String> trace, boolean batch) {
+        if (trace.isEmpty()) {
+            throw new IllegalArgumentException("The trace has no jobs");
+        }
+        this.trace = trace;
+        this.batch = batch;
+    }
+
+    // Method to simulate one shift and return what was achieved
+    Result simulate(double shiftMs, double meanArrivalMs, double decodeMs, boolean pipelined) {
+        Result result = new Result();
+        PriorityQueue<Event> events = new PriorityQueue<>((x, y) -> x.time != y.time
+                ? Double.compare(x.time, y.time) : Long.compare(x.sequence, y.sequence));
+        Random random = new Random(RANDOM_SEED);
+        long[] sequence = {0};
+        int[] nextJob = {0};
+
+        ArrayDeque<Job> waitingToScan = new ArrayDeque<>();
+        ArrayDeque<Job> waitingToDraw = new ArrayDeque<>();
+        Job decoding = null, drawing = null; // Jobs being decoded and drawn, null when the scanner or robot is free
+        boolean drawnBefore = false; // Whether the robot has started a job yet (batch mode backs off before the next)
+        double now = 0;
+
+        // First job arrives at the start of the shift
+        events.add(new Event(0, sequence[0]++, ARRIVAL, newJob(nextJob)));
+
+        while (!events.isEmpty() && events.peek().time <= shiftMs) {
+            Event event = events.poll();
+            now = event.time;
+            Job job = event.job;
+
+            if (event.type == ARRIVAL) {
+                job.arrived = now;
+                waitingToScan.add(job);
+                if (meanArrivalMs > 0) { // Schedule the next arrival
+                    double gap = -meanArrivalMs * Math.log(1 - random.nextDouble());
+                    events.add(new Event(now + gap, sequence[0]++, ARRIVAL, newJob(nextJob)));
+                }
+            } else if (event.type == DECODE_DONE) {
+                job.decoded = now;
+                decoding = null;
+                result.scannerBusyMs += decodeMs;
+                if (plan(job.payload) == REJECTED) {
+                    result.rejected++; // The robot never sees it
+                } else {
+                    waitingToDraw.add(job);
+                }
+            } else { // DRAW_DONE
+                double[] plan = plan(job.payload);
+                drawing = null;
+                result.robotBusyMs += now - job.drawStarted;
+                result.jobs++;
+                result.shapes += (long) plan[1];
+                result.scanWaitMs.add(job.decodeStarted - job.arrived);
+                result.drawWaitMs.add(job.drawStarted - job.decoded);
+            }
+
+            // Start whatever can start now
+            if (drawing == null && !waitingToDraw.isEmpty()) {
+                drawing = waitingToDraw.poll();
+                drawing.drawStarted = now;
+                double robotMs = plan(drawing.payload)[0];
+                if (batch && drawnBefore) {
+                    robotMs += SwiftBotShapeDrawer.backOffMs(); // BatchJobRunner backs off between lines too
+                }
+                drawnBefore = true;
+                events.add(new Event(now + robotMs, sequence[0]++, DRAW_DONE, drawing));
+            }
+            boolean scannerFree = pipelined ? waitingToDraw.size() < LOOK_AHEAD : drawing == null && waitingToDraw.isEmpty();
+            if (decoding == null && scannerFree) {
+                if (waitingToScan.isEmpty() && meanArrivalMs <= 0) {
+                    Job next = newJob(nextJob); // Back to back: the next job is always ready
+                    next.arrived = now;
+                    waitingToScan.add(next);
+                }
+                if (!waitingToScan.isEmpty()) {
+                    decoding = waitingToScan.poll();
+                    decoding.decodeStarted = now;
+                    events.add(new Event(now + decodeMs, sequence[0]++, DECODE_DONE, decoding));
+                }
+            }
+        }
+
+        // Count the work still in progress when the shift ends, up to the end of the shift
+        if (decoding != null) {
+            result.scannerBusyMs += shiftMs - decoding.decodeStarted;
+        }
+        if (drawing != null) {
+            result.robotBusyMs += shiftMs - drawing.drawStarted;
+        }
+        return result;
+    }
+
+    // Method to create the next job from the trace
+    private Job newJob(int[] nextJob) {
+        Job job = new Job();
+        job.payload = trace.get(nextJob[0]++ % trace.size());
+        return job;
+    }
+
+    // Method to parse and plan a job, as processInput (or BatchJobRunner in batch mode) would,
+    // returning {robot time in ms, shapes drawn}, or REJECTED
+    private double[] plan(String payload) {
+        double[] plan = plans.get(payload);
+        if (plan != null) {
+            return plan;
+        }
+
+        JobValidator.Report report = batch
+                ? SwiftBotShapeDrawer.getBackOffValidator().validate(payload, Integer.MAX_VALUE)
+                : SwiftBotShapeDrawer.getJobValidator().validate(payload, SwiftBotShapeDrawer.maxShapesPerQR);
+        if (report.isValid()) {
+            plan = new double[] {report.estimatedMs, report.shapes.size()};
+        } else {
+            plan = REJECTED;
+        }
+        plans.put(payload, plan);
+        return plan;
+    }
+
+    // Method to check that at least one job in the trace can be drawn (otherwise the robot would
+    // never be busy and rejected jobs would repeat forever)
+    boolean hasDrawableJob() {
+        for (String payload : trace) {
+            if (plan(payload) != REJECTED) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    // Method to read the job payloads from a trace file ("-" for standard input), skipping blank
+    // lines and lines starting with '#'
+    static List<String> readTrace(String source) throws IOException {
+        List<String> jobs = new ArrayList<>();
+        try (BufferedReader in = source.equals("-")
+                ? new BufferedReader(new InputStreamReader(System.in, StandardCharsets.UTF_8))
+                : Files.newBufferedReader(Paths.get(source), StandardCharsets.UTF_8)) {
+            String line;
+            while ((line = in.readLine()) != null) {
+                String trimmed = line.trim();
+                if (!trimmed.isEmpty() && !trimmed.startsWith("#")) {
+                    jobs.add(trimmed);
+                }
+            }
+        }
+        return jobs;
+    }
+
+    public static void main(String[] args) throws Exception {
+        boolean batch = args.length > 0 && args[0].equals("--batch");
+        if (batch ? args.length < 3 : args.length < 4) {
+            System.out.println("Usage: CapacitySimulator <trace file|-> <shift hours> <mean ms between jobs|0> <decode ms>[,<decode ms>...]");
+            System.out.println("   or: CapacitySimulator --batch <batch file|-> <shift hours>");
+            return;
+        }
+        if (batch) {
+            args = Arrays.copyOfRange(args, 1, args.length);
+        }
+        List<String> trace = readTrace(args[0]);
+        double shiftHours = Double.parseDouble(args[1]);
+        double meanArrivalMs = batch ? 0 : Double.parseDouble(args[2]); // A batch file is read back to back
+
+        CapacitySimulator simulator = new CapacitySimulator(trace, batch);
+        if (!simulator.hasDrawableJob()) {
+            System.out.println("No job in " + args[0] + " passes the pre-flight check, nothing would be drawn.");
+            return;
+        }
+        double shiftMs = shiftHours * 3600 * 1000;
+        System.out.printf("Capacity for %d %s from %s over a %.1f hour shift, %s%n", trace.size(),
+                batch ? "batch lines" : "jobs", args[0], shiftHours,
+                meanArrivalMs > 0 ? String.format("a job every %.0f ms on average", meanArrivalMs) : "jobs back to back");
+        System.out.printf("%-11s %9s %8s %10s %12s %10s %10s %17s %17s%n", "Mode", "Decode ms", "Jobs/h", "Rejected/h",
+                "Shapes/h", "Scanner", "Robot", "Scan wait p50/p95", "Draw wait p50/p95");
+
+        String[] decodes = batch ? new String[] {"0"} : args[3].split(","); // Batch lines aren't decoded
+        for (String decode : decodes) {
+            double decodeMs = Double.parseDouble(decode.trim());
+            for (boolean pipelined : batch ? new boolean[] {true} : new boolean[] {false, true}) {
+                long start = System.nanoTime();
+                Result result = simulator.simulate(shiftMs, meanArrivalMs, decodeMs, pipelined);
+                double wallMs = (System.nanoTime() - start) / 1e6;
+
+                System.out.printf("%-11s %9.0f %8.1f %10.1f %12.1f %9.1f%% %9.1f%% %8.1f/%-8.1f %8.1f/%-8.1f (%.0f ms)%n",
+                        batch ? "batch" : pipelined ? "pipelined" : "sequential", decodeMs, result.jobs / shiftHours,
+                        result.rejected / shiftHours, result.shapes / shiftHours,
+                        result.scannerBusyMs / shiftMs * 100, result.robotBusyMs / shiftMs * 100,
+                        result.scanWaitMs.quantile(0.5) / 1000, result.scanWaitMs.quantile(0.95) / 1000,
+                        result.drawWaitMs.quantile(0.5) / 1000, result.drawWaitMs.quantile(0.95) / 1000, wallMs);
+            }
+        }
+        System.out.println("Waits are in seconds; the time in brackets is how long the simulation took.");
+        System.out.println("Rejected jobs failed the pre-flight check and are not counted in Jobs/h or Shapes/h.");
+    }
+}
@@ -0,0 +1,44 @@
+package Swiftbot;
+
+// Kinematic model of the SwiftBot's two-wheel drive, derived from the movement calibration.
+// At the reference speed the robot covers 1 cm every moveTimePerCm ms, and spinning on the spot
+// with the wheels at +/- reference speed turns it 90 degrees in turnTime90 ms.
+class DifferentialDriveModel {
+    private final double cmPerMsPerSpeed; // Wheel travel per ms for each unit of motor speed
+    private final double trackWidthCm; // Distance between the two wheels in cm
+
+    DifferentialDriveModel(double moveTimePerCm, double turnTime90, int referenceSpeed) {
+        this.cmPerMsPerSpeed = 1.0 / (moveTimePerCm * referenceSpeed);
+        // While spinning each wheel travels along a circle of radius trackWidth / 2
+        double wheelTravel90 = turnTime90 / moveTimePerCm;
+        this.trackWidthCm = 2 * wheelTravel90 / (Math.PI / 2);
+    }
+
+    // Method to get the linear speed of a wheel in cm per ms
+    double wheelSpeed(int speed) {
+        return speed * cmPerMsPerSpeed;
+    }
+
+    double getTrackWidthCm() {
+        return trackWidthCm;
+    }
+
+    // Method to move a pose along the exact arc driven by a differential move command
+    void advance(Pose pose, int leftSpeed, int rightSpeed, double timeMs) {
+        double vLeft = wheelSpeed(leftSpeed);
+        double vRight = wheelSpeed(rightSpeed);
+        double v = (vLeft + vRight) / 2; // Linear speed of the robot centre
+        double omega = (vRight - vLeft) / trackWidthCm; // Angular speed in radians per ms
+
+        if (Math.abs(omega) < 1e-12) {
+            pose.x += v * timeMs * Math.cos(pose.heading);
+            pose.y += v * timeMs * Math.sin(pose.heading);
+        } else {
+            double newHeading = pose.heading + omega * timeMs;
+            double radius = v / omega;
+            pose.x += radius * (Math.sin(newHeading) - Math.sin(pose.heading));
+            pose.y -= radius * (Math.cos(newHeading) - Math.cos(pose.heading));
+            pose.heading = newHeading;
+        }
+    }
+}
@@ -0,0 +1,105 @@
+package Swiftbot;
+
+import java.util.concurrent.*;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+// Event-driven controller for the interactive program.
+// Button presses are posted as events onto a queue, and a single thread works through them:
+//
+//   IDLE --Y--> SCANNING --code found--> DRAWING --> SUMMARY --> IDLE
+//                   \--timeout/cancel---------------------------> IDLE
+//
+// The thread blocks on the queue while idle, so nothing polls. The text summary is written on a
+// background thread, so the next scan can start straight away. Pressing X cancels a scan in
+// progress, or exits once the current drawing job has finished.
+class DrawerController {
+
+    // States of the controller
+    enum State {
+        IDLE, SCANNING, DRAWING, SUMMARY, STOPPED
+    }
+
+    // Events posted by the buttons
+    enum Event {
+        SCAN, EXIT
+    }
+
+    private final Supplier<String> scanner; // Scans a QR code, returning "" if none was found
+    private final Consumer<String> drawer; // Draws the shapes in a payload
+    private final Runnable summary; // Writes the drawing summary
+
+    private final BlockingQueue<Event> events = new LinkedBlockingQueue<>();
+    private final ExecutorService summaryWriter = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "summary-writer");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private State state = State.IDLE; // Guarded by this
+    private Thread controllerThread; // Thread running the state machine
+
+    DrawerController(Supplier<String> scanner, Consumer<String> drawer, Runnable summary) {
+        this.scanner = scanner;
+        this.drawer = drawer;
+        this.summary = summary;
+    }
+
+    // Method for button callbacks to post an event (returns immediately)
+    synchronized void post(Event event) {
+        events.offer(event);
+        if (event == Event.EXIT && state == State.SCANNING) {
+            controllerThread.interrupt(); // Cancel the scan rather than waiting up to 60 seconds
+        } else if (event == Event.EXIT && state == State.DRAWING) {
+            System.out.println("\nExiting after the current job...");
+        }
+    }
+
+    // Method to run the state machine on the calling thread until X is pressed
+    // Starts with a scan, as the program always has
+    void run() throws InterruptedException {
+        synchronized (this) {
+            controllerThread = Thread.currentThread();
+        }
+        events.offer(Event.SCAN);
+
+        try {
+            while (events.take() == Event.SCAN) {
+                setState(State.SCANNING);
+                String payload = scanner.get();
+
+                synchronized (this) {
+                    if (Thread.interrupted() || events.contains(Event.EXIT)) { // X was pressed during the scan
+                        System.out.println("\nScan cancelled.");
+                        state = State.IDLE;
+                        events.removeIf(event -> event == Event.SCAN);
+                        continue;
+                    }
+                    state = payload.isEmpty() ? State.IDLE : State.DRAWING;
+                }
+
+                if (!payload.isEmpty()) {
+                    drawer.accept(payload);
+                    setState(State.SUMMARY);
+                    summaryWriter.execute(summary); // Write the summary while the next scan starts
+                }
+
+                setState(State.IDLE);
+                events.removeIf(event -> event == Event.SCAN); // Y presses during the job don't queue up more scans
+                System.out.println("\nPress 'Y' to scan another QR code or 'X' to exit.");
+            }
+        } finally {
+            setState(State.STOPPED);
+            summaryWriter.shutdown();
+            summaryWriter.awaitTermination(30, TimeUnit.SECONDS); // Let a summary in progress finish
+        }
+    }
+
+    private synchronized void setState(State newState) {
+        state = newState;
+    }
+
+    synchronized State getState() {
+        return state;
+    }
+}
@@ -0,0 +1,262 @@
+package Swiftbot;
+
+import java.io.*;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Shares the shapes of a job between several robots drawing on the same floor.
+// Shapes are handed out longest first to the robot with the least estimated drawing time queued
+// (estimated from the planned trajectory), into one deque per robot. Each robot takes shapes from
+// the front of its own deque; a robot that runs out steals from the back of the deque with the
+// most time left, so robots that draw slower than planned don't hold the whole job up.
+// Each robot keeps its own statistics, which are merged into a fleet summary at the end.
+//
+// Usage (simulated robots): java Swiftbot.FleetCoordinator <max robots> <compression> <command> [command ...]
+//   e.g. java Swiftbot.FleetCoordinator 4 200 S-30&T-30-40-50 C-40&S-20 T-20-20-20
+// runs the commands with 1, 2, ... max robots and reports how the throughput scales.
+public class FleetCoordinator {
+    private final List<ShapeDrawerWorker> workers; // One per robot
+    private final List<Deque<SwiftBotShapeDrawer.Shape>> queues = new ArrayList<>(); // Shapes waiting for each robot
+    private final List<AtomicLong> queuedMs = new ArrayList<>(); // Estimated drawing time left in each queue
+    private final Map<SwiftBotShapeDrawer.Shape, Integer> estimates = new ConcurrentHashMap<>(); // Estimated ms per shape
+
+    // Results of one run for each robot
+    private final long[] shapesDrawn;
+    private final long[] shapesStolen;
+    private final long[] busyNanos;
+
+    FleetCoordinator(List<ShapeDrawerWorker> workers) {
+        if (workers.isEmpty()) {
+            throw new IllegalArgumentException("Need at least one robot");
+        }
+        this.workers = workers;
+        for (int i = 0; i < workers.size(); i++) {
+            queues.add(new ConcurrentLinkedDeque<>());
+            queuedMs.add(new AtomicLong());
+        }
+        shapesDrawn = new long[workers.size()];
+        shapesStolen = new long[workers.size()];
+        busyNanos = new long[workers.size()];
+    }
+
+    // Method to draw every shape with the fleet, returning once all robots have finished
+    // Returns the time taken in ms
+    double run(List<SwiftBotShapeDrawer.Shape> shapes) throws InterruptedException {
+        assign(shapes);
+
+        ExecutorService pool = Executors.newFixedThreadPool(workers.size(), runnable -> {
+            Thread thread = new Thread(runnable, "fleet-worker");
+            thread.setDaemon(true);
+            return thread;
+        });
+        long start = System.nanoTime();
+        try {
+            List<Future<?>> running = new ArrayList<>();
+            for (int i = 0; i < workers.size(); i++) {
+                int index = i;
+                running.add(pool.submit(() -> workLoop(index)));
+            }
+            for (Future<?> future : running) {
+                try {
+                    future.get();
+                } catch (ExecutionException e) {
+                    System.out.println("Error in fleet worker: " + e.getCause());
+                }
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+        return (System.nanoTime() - start) / 1e6;
+    }
+
+    // Method to hand out the shapes, longest first, to the robot with the least work queued
+    private void assign(List<SwiftBotShapeDrawer.Shape> shapes) {
+        List<SwiftBotShapeDrawer.Shape> longestFirst = new ArrayList<>(shapes);
+        for (SwiftBotShapeDrawer.Shape shape : longestFirst) {
+            estimates.put(shape, TrajectoryPlanner.totalTime(shape.plan()));
+        }
+        longestFirst.sort((x, y) -> Integer.compare(estimates.get(y), estimates.get(x)));
+
+        for (SwiftBotShapeDrawer.Shape shape : longestFirst) {
+            int least = 0;
+            for (int i = 1; i < workers.size(); i++) {
+                if (queuedMs.get(i).get() < queuedMs.get(least).get()) {
+                    least = i;
+                }
+            }
+            queues.get(least).addLast(shape);
+            queuedMs.get(least).addAndGet(estimates.get(shape));
+        }
+    }
+
+    // Method run by each robot's thread: draw its own shapes, then steal until nothing is left
+    private void workLoop(int index) {
+        ShapeDrawerWorker worker = workers.get(index);
+        boolean first = true;
+        while (true) {
+            SwiftBotShapeDrawer.Shape shape = take(index, queues.get(index).pollFirst());
+            if (shape == null) {
+                shape = steal(index);
+                if (shape == null) {
+                    return; // Every queue is empty
+                }
+            }
+
+            long start = System.nanoTime();
+            if (!first) {
+                worker.moveBackwards(15); // Move backwards to start the next shape
+            }
+            worker.draw(shape);
+            busyNanos[index] += System.nanoTime() - start;
+            shapesDrawn[index]++;
+            first = false;
+        }
+    }
+
+    // Method to take a shape from the back of the queue with the most estimated time left
+    private SwiftBotShapeDrawer.Shape steal(int thief) {
+        while (true) {
+            int victim = -1;
+            for (int i = 0; i < queues.size(); i++) {
+                if (i != thief && !queues.get(i).isEmpty()
+                        && (victim < 0 || queuedMs.get(i).get() > queuedMs.get(victim).get())) {
+                    victim = i;
+                }
+            }
+            if (victim < 0) {
+                return null;
+            }
+            SwiftBotShapeDrawer.Shape shape = take(victim, queues.get(victim).pollLast());
+            if (shape != null) {
+                shapesStolen[thief]++;
+                return shape;
+            }
+            // Someone else emptied that queue first, look again
+        }
+    }
+
+    // Method to update the time left in a queue after a shape was taken from it
+    private SwiftBotShapeDrawer.Shape take(int queue, SwiftBotShapeDrawer.Shape shape) {
+        if (shape != null) {
+            queuedMs.get(queue).addAndGet(-estimates.get(shape));
+        }
+        return shape;
+    }
+
+    // Method to merge every robot's statistics into one fleet summary
+    ShapeStatistics fleetStatistics() {
+        ShapeStatistics fleet = new ShapeStatistics();
+        for (ShapeDrawerWorker worker : workers) {
+            fleet.merge(worker.getStatistics());
+        }
+        return fleet;
+    }
+
+    // Method to write how much each robot drew in the last run
+    void writeWorkerReport(PrintWriter writer, double elapsedMs) {
+        for (int i = 0; i < workers.size(); i++) {
+            writer.printf("   %s: %d shapes (%d stolen), busy %.0f%% of the time%n", workers.get(i).getName(),
+                    shapesDrawn[i], shapesStolen[i], busyNanos[i] / 1e6 / elapsedMs * 100);
+        }
+    }
+
+    // Method to close every robot's feedback
+    void close() {
+        for (ShapeDrawerWorker worker : workers) {
+            worker.close();
+        }
+    }
+
+    public static void main(String[] args) throws Exception {
+        int maxRobots = args.length < 3 ? 0 : Integer.parseInt(args[0]);
+        if (maxRobots < 1) { // Needs at least one timed run after the warm-up
+            System.out.println("Usage: FleetCoordinator <max robots> <compression> <command> [command ...]");
+            if (args.length >= 3) {
+                System.out.println("<max robots> must be at least 1.");
+            }
+            return;
+        }
+        double compression = Double.parseDouble(args[1]);
+        SwiftBotShapeDrawer.setMotionBackend(new NoOpMotionBackend()); // Only used to flash errors for rejected jobs
+
+        PrintStream console = System.out;
+        PrintWriter writer = new PrintWriter(console, true);
+        List<String> commands = acceptedJobs(Arrays.asList(args).subList(2, args.length));
+        if (commands.isEmpty()) {
+            writer.println("No job passed the pre-flight check, nothing to draw.");
+            return;
+        }
+        writer.println("Fleet scaling for " + String.join(" ", commands) + " (compression " + compression + ")");
+
+        double baseline = 0;
+        FleetCoordinator last = null;
+        for (int robots = 0; robots <= maxRobots; robots++) { // Run 0 is an untimed warm-up with one robot
+            List<ShapeDrawerWorker> workers = new ArrayList<>();
+            for (int i = 1; i <= Math.max(1, robots); i++) {
+                workers.add(new ShapeDrawerWorker("bot-" + i, new SimulatedMotionBackend(compression),
+                        SwiftBotShapeDrawer.getMetrics()));
+            }
+            FleetCoordinator fleet = new FleetCoordinator(workers);
+
+            System.setOut(new PrintStream(OutputStream.nullOutputStream())); // Drawing output is not needed here
+            List<SwiftBotShapeDrawer.Shape> shapes;
+            double elapsedMs;
+            try {
+                shapes = parse(commands);
+                elapsedMs = fleet.run(shapes);
+            } finally {
+                System.setOut(console);
+            }
+
+            if (robots == 0) {
+                fleet.close();
+                continue;
+            } else if (robots == 1) {
+                baseline = elapsedMs;
+            }
+            double speedup = baseline / elapsedMs;
+            writer.printf("%nRobots: %d - %d shapes in %.2f seconds, %.2f shapes/second, speedup %.2fx (%.0f%% efficiency)%n",
+                    robots, shapes.size(), elapsedMs / 1000, shapes.size() / (elapsedMs / 1000), speedup, speedup / robots * 100);
+            fleet.writeWorkerReport(writer, elapsedMs);
+
+            if (last != null) {
+                last.close();
+            }
+            last = fleet;
+        }
+
+        writer.println("\nFleet summary (" + maxRobots + " robots):");
+        ShapeStatistics fleetStatistics = last.fleetStatistics();
+        fleetStatistics.writeTotals(writer);
+        fleetStatistics.writeTypeBreakdown(writer);
+        writer.flush();
+        last.close();
+        SwiftBotShapeDrawer.closeMetrics(); // Write the timings if -Dswiftbot.metricsFile was given
+    }
+
+    // Method to check every job before any robot moves, returning the ones that can be drawn
+    // A job with a bad command is left out whole, with its problems printed
+    private static List<String> acceptedJobs(List<String> commands) {
+        List<String> accepted = new ArrayList<>();
+        for (String command : commands) {
+            JobValidator.Report report = SwiftBotShapeDrawer.getBackOffValidator().validate(command, Integer.MAX_VALUE);
+            if (report.isValid()) {
+                accepted.add(command);
+            } else {
+                System.out.println("Job rejected, none of it will be drawn: " + command);
+                SwiftBotShapeDrawer.rejectJob(report);
+            }
+        }
+        return accepted;
+    }
+
+    // Method to turn jobs that passed the pre-flight check into shapes
+    private static List<SwiftBotShapeDrawer.Shape> parse(List<String> commands) {
+        List<SwiftBotShapeDrawer.Shape> shapes = new ArrayList<>();
+        for (String command : commands) {
+            shapes.addAll(SwiftBotShapeDrawer.getBackOffValidator().validate(command, Integer.MAX_VALUE).shapes);
+        }
+        return shapes;
+    }
+}
@@ -0,0 +1,36 @@
+package Swiftbot;
+
+import java.awt.image.BufferedImage;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Pool of preallocated grayscale frame buffers, so scanning does not allocate a new image for
+// every frame it downscales
+class FrameBufferPool {
+    private final BlockingQueue<BufferedImage> free; // Buffers ready to be reused
+    private final AtomicLong allocations = new AtomicLong(); // Buffers created because none were free
+
+    FrameBufferPool(int capacity) {
+        this.free = new ArrayBlockingQueue<>(capacity);
+    }
+
+    // Method to get a buffer of the given size, reusing a free one when possible
+    BufferedImage acquire(int width, int height) {
+        BufferedImage buffer = free.poll();
+        if (buffer != null && buffer.getWidth() == width && buffer.getHeight() == height) {
+            return buffer;
+        }
+        allocations.incrementAndGet(); // None free, or the camera resolution changed
+        return new BufferedImage(width, height, BufferedImage.TYPE_BYTE_GRAY);
+    }
+
+    // Method to give a buffer back to the pool (dropped if the pool is already full)
+    void release(BufferedImage buffer) {
+        free.offer(buffer);
+    }
+
+    long getAllocations() {
+        return allocations.get();
+    }
+}
@@ -0,0 +1,153 @@
+package Swiftbot;
+
+import java.io.*;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.util.List;
+
+// Write-ahead journal of the job being drawn, so a job cut short by a crash or power cut can be
+// finished instead of scanned and drawn again. Each line is written and forced to disk before the
+// robot moves on:
+//   JOB <payload>           a job has been accepted and is about to be drawn
+//   TRAVEL <shape> <index>  motor command <index> on the way to the shape has finished (the turns
+//                           and moves to its start, or the back-off after the shape before it)
+//   START <shape>           the robot starts drawing the shape (numbered in drawing order from 0)
+//   MOVE <shape> <index>    motor command <index> of the shape has finished
+//   DONE <shape>            the shape is finished
+//   END                     the whole job is finished
+// The file is emptied when a job ends, so it only ever holds the job in progress.
+class JobJournal implements Closeable {
+    private final Path file; // Journal file
+    private final FileOutputStream out; // Appends to the file
+    private final FileChannel channel; // Used to force each line to disk
+
+    // Job that was cut short, and where to carry on drawing it
+    static class Unfinished {
+        final String payload; // Commands of the job
+        final int shape; // First shape (in drawing order) that isn't finished
+        final int travel; // First motor command on the way to that shape that didn't finish
+        final boolean started; // Whether the robot had reached that shape and started drawing it
+        final int command; // First motor command of that shape that didn't finish
+
+        Unfinished(String payload, int shape, int travel, boolean started, int command) {
+            this.payload = payload;
+            this.shape = shape;
+            this.travel = travel;
+            this.started = started;
+            this.command = command;
+        }
+    }
+
+    JobJournal(Path file) throws IOException {
+        this.file = file;
+        this.out = new FileOutputStream(file.toFile(), true);
+        this.channel = out.getChannel();
+    }
+
+    // Method to read the journal left by the last run and find the job it didn't finish, if any
+    Unfinished recover() throws IOException {
+        List<String> lines = Files.readAllLines(file, StandardCharsets.UTF_8);
+        String payload = null;
+        int shape = 0, travel = 0, command = 0;
+        boolean started = false;
+        for (String line : lines) {
+            String[] parts = line.split(" ", 3);
+            try {
+                if (line.startsWith("JOB ")) {
+                    payload = line.substring(4); // The payload can contain spaces
+                    shape = 0;
+                    travel = 0;
+                    started = false;
+                    command = 0;
+                } else if (parts[0].equals("TRAVEL") && parts.length == 3) {
+                    shape = Integer.parseInt(parts[1]);
+                    travel = Integer.parseInt(parts[2]) + 1; // Carry on with the next command
+                    started = false;
+                    command = 0;
+                } else if (parts[0].equals("START") && parts.length == 2) {
+                    shape = Integer.parseInt(parts[1]);
+                    started = true;
+                    command = 0;
+                } else if (parts[0].equals("MOVE") && parts.length == 3) {
+                    shape = Integer.parseInt(parts[1]);
+                    started = true;
+                    command = Integer.parseInt(parts[2]) + 1; // Carry on with the next command
+                } else if (parts[0].equals("DONE") && parts.length == 2) {
+                    shape = Integer.parseInt(parts[1]) + 1; // Carry on with the next shape
+                    travel = 0;
+                    started = false;
+                    command = 0;
+                } else if (parts[0].equals("END")) {
+                    payload = null;
+                }
+            } catch (NumberFormatException e) {
+                // Half-written last line from the crash, the lines before it still count
+            }
+        }
+        return payload == null ? null : new Unfinished(payload, shape, travel, started, command);
+    }
+
+    // Method to record that a job is about to be drawn (line breaks in the payload are replaced,
+    // as they can't be part of a command)
+    void jobStarted(String payload) throws IOException {
+        clear();
+        write("JOB " + payload.replace('\n', ' ').replace('\r', ' '));
+    }
+
+    // Method to record that an unfinished job is being drawn again, carrying over what was already
+    // drawn, so it can still be finished if the robot stops again before it gets any further
+    void jobResumed(Unfinished job) throws IOException {
+        jobStarted(job.payload);
+        if (job.shape > 0) {
+            shapeDone(job.shape - 1);
+        }
+        if (job.started) {
+            shapeStarted(job.shape);
+            if (job.command > 0) {
+                commandDone(job.shape, job.command - 1);
+            }
+        } else if (job.travel > 0) {
+            travelDone(job.shape, job.travel - 1);
+        }
+    }
+
+    void travelDone(int shape, int command) throws IOException {
+        write("TRAVEL " + shape + " " + command);
+    }
+
+    void shapeStarted(int shape) throws IOException {
+        write("START " + shape);
+    }
+
+    void commandDone(int shape, int command) throws IOException {
+        write("MOVE " + shape + " " + command);
+    }
+
+    void shapeDone(int shape) throws IOException {
+        write("DONE " + shape);
+    }
+
+    // Method to record that the job finished, emptying the journal
+    void jobDone() throws IOException {
+        write("END");
+        clear();
+    }
+
+    // Method to empty the journal (e.g. when the operator discards an unfinished job)
+    synchronized void clear() throws IOException {
+        channel.truncate(0);
+        channel.force(true);
+    }
+
+    // Method to append one line and force it to disk
+    private synchronized void write(String line) throws IOException {
+        out.write((line + "\n").getBytes(StandardCharsets.UTF_8));
+        channel.force(false);
+    }
+
+    @Override
+    public void close() throws IOException {
+        out.close();
+    }
+}
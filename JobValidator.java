@@ -0,0 +1,178 @@
+package Swiftbot;
+
+import java.util.*;
+
+// Pre-flight check of a whole job before the robot moves. Every problem is collected, not just
+// the first, so the operator can fix the QR code in one go:
+//   - commands that can't be scanned, and jobs with too many shapes (or none)
+//   - side lengths and diameters outside 15 cm - 85 cm, and triangles whose sides can't meet
+//   - shapes that don't fit on the canvas: laid out together by the path optimizer, or failing
+//     that (or with the optimizer off) one at a time, as the robot backs off 15 cm between them
+//   - jobs that would take longer than the time budget
+// QR jobs are laid out by the path optimizer when it is on; batch lines and fleet jobs are always
+// drawn one shape after another with back-offs, so their validator checks and estimates them that way.
+// Nothing is printed and no shared state is changed, so it can run on the QR decode threads and
+// reject a bad code while the camera is still looking for a good one.
+class JobValidator {
+
+    // Kinds of problem
+    enum Kind {
+        SYNTAX, // A command couldn't be scanned
+        SHAPE_LIMIT, // More shapes than allowed, or none at all
+        SIDE_RANGE, // Side length or diameter out of range
+        TRIANGLE, // Triangle sides don't satisfy the triangle inequality
+        CANVAS, // The shapes don't fit on the canvas
+        DURATION // The job would take longer than the time budget
+    }
+
+    // One problem with a job
+    static class Problem {
+        final Kind kind;
+        final int command; // Command the problem is in (from 0), or -1 if it is about the whole job
+        final String message; // Description, in the words the drawer has always used
+
+        Problem(Kind kind, int command, String message) {
+            this.kind = kind;
+            this.command = command;
+            this.message = message;
+        }
+
+        @Override
+        public String toString() {
+            return kind + (command >= 0 ? " (command " + (command + 1) + ")" : "") + ": " + message;
+        }
+    }
+
+    // Result of checking a job
+    static class Report {
+        final List<Problem> problems = new ArrayList<>(); // Empty if the job can be drawn
+        final List<SwiftBotShapeDrawer.Shape> shapes = new ArrayList<>(); // Shapes that passed their own checks
+        double estimatedMs = 0; // Estimated drawing time of those shapes, including the moves between them
+        PathOptimizer.PathPlan plan = null; // Layout to draw them with, null if they are drawn with back-offs
+
+        boolean isValid() {
+            return problems.isEmpty();
+        }
+    }
+
+    private final PathOptimizer pathOptimizer; // Lays shapes out on the canvas
+    private final boolean optimizedLayout; // Whether jobs are laid out by the path optimizer when it is on
+    private volatile double timeBudgetMs; // Longest job allowed (ms), 0 for no limit
+
+    JobValidator(PathOptimizer pathOptimizer, double timeBudgetMs) {
+        this(pathOptimizer, timeBudgetMs, true);
+    }
+
+    JobValidator(PathOptimizer pathOptimizer, double timeBudgetMs, boolean optimizedLayout) {
+        this.pathOptimizer = pathOptimizer;
+        this.timeBudgetMs = timeBudgetMs;
+        this.optimizedLayout = optimizedLayout;
+    }
+
+    // Method to change the longest job allowed (ms), 0 for no limit
+    void setTimeBudgetMs(double timeBudgetMs) {
+        this.timeBudgetMs = timeBudgetMs;
+    }
+
+    // Method to check a job of up to maxShapes shapes
+    Report validate(CharSequence input, int maxShapes) {
+        ShapeCommandBuffer program = new ShapeCommandBuffer(); // Not shared, decode threads check codes in parallel
+        ShapeCommandScanner.scan(input, maxShapes, program);
+        return validate(program, maxShapes);
+    }
+
+    // Method to check a job that has already been scanned with the same maxShapes
+    Report validate(ShapeCommandBuffer program, int maxShapes) {
+        Report report = checkShapes(program, maxShapes);
+        checkPlan(report);
+        return report;
+    }
+
+    // Method to check the scanned commands on their own: syntax, number of shapes and sizes
+    // (the first half of validate, so callers can time it apart from planning)
+    Report checkShapes(ShapeCommandBuffer program, int maxShapes) {
+        Report report = new Report();
+        if (program.isLimitExceeded()) {
+            report.problems.add(new Problem(Kind.SHAPE_LIMIT, -1,
+                    "You can specify a maximum of " + maxShapes + " shapes per QR code."));
+        } else if (program.size() == 0) {
+            report.problems.add(new Problem(Kind.SHAPE_LIMIT, -1, "No shapes in the QR code."));
+        }
+        for (int i = 0; i < program.size(); i++) {
+            SwiftBotShapeDrawer.Shape shape = checkCommand(program, i, report.problems);
+            if (shape != null) {
+                report.shapes.add(shape);
+            }
+        }
+        return report;
+    }
+
+    // Method to plan the shapes that passed checkShapes and check the plan: canvas and time budget
+    // (the second half of validate)
+    void checkPlan(Report report) {
+        if (report.shapes.isEmpty()) {
+            return;
+        }
+        report.plan = checkCanvas(report);
+        report.estimatedMs = SwiftBotShapeDrawer.estimateDrawingMs(report.shapes, report.plan);
+        double budgetMs = timeBudgetMs;
+        if (budgetMs > 0 && report.estimatedMs > budgetMs) {
+            report.problems.add(new Problem(Kind.DURATION, -1, String.format(
+                    "The job would take about %.0f seconds, the limit is %.0f seconds.",
+                    report.estimatedMs / 1000, budgetMs / 1000)));
+        }
+    }
+
+    // Method to check one scanned command, returning its shape or null if it has a problem
+    private static SwiftBotShapeDrawer.Shape checkCommand(ShapeCommandBuffer program, int i, List<Problem> problems) {
+        if (program.error(i) != ShapeCommandBuffer.OK) {
+            problems.add(new Problem(Kind.SYNTAX, i, program.errorMessage(i)));
+            return null;
+        }
+
+        if (program.type(i) == ShapeLogRecord.SQUARE) {
+            int side = program.param(i, 0);
+            if (SwiftBotShapeDrawer.validateSideLength(side)) {
+                return new SwiftBotShapeDrawer.Square(side);
+            }
+            problems.add(new Problem(Kind.SIDE_RANGE, i, "Side length must be between 15 cm - 85 cm (command " + (i + 1) + ")."));
+        } else if (program.type(i) == ShapeLogRecord.TRIANGLE) {
+            int a = program.param(i, 0), b = program.param(i, 1), c = program.param(i, 2);
+            if (!SwiftBotShapeDrawer.validateSideLength(a) || !SwiftBotShapeDrawer.validateSideLength(b)
+                    || !SwiftBotShapeDrawer.validateSideLength(c)) {
+                problems.add(new Problem(Kind.SIDE_RANGE, i, "Side length must be between 15 cm - 85 cm (command " + (i + 1) + ")."));
+            } else if (!SwiftBotShapeDrawer.validateTriangle(a, b, c)) {
+                problems.add(new Problem(Kind.TRIANGLE, i, "Invalid triangle sides in command " + (i + 1)
+                        + ": each side must be shorter than the other two together."));
+            } else {
+                return new SwiftBotShapeDrawer.Triangle(a, b, c);
+            }
+        } else {
+            int diameter = program.param(i, 0);
+            if (SwiftBotShapeDrawer.validateSideLength(diameter)) {
+                return new SwiftBotShapeDrawer.Circle(diameter);
+            }
+            problems.add(new Problem(Kind.SIDE_RANGE, i, "Diameter must be between 15 cm - 85 cm (command " + (i + 1) + ")."));
+        }
+        return null;
+    }
+
+    // Method to check the shapes fit on the canvas: laid out together when the path optimizer
+    // can place them, otherwise one at a time, as they are then drawn one after another with
+    // back-offs between them
+    // Returns the layout, or null if the shapes are drawn with back-offs
+    private PathOptimizer.PathPlan checkCanvas(Report report) {
+        if (optimizedLayout && SwiftBotShapeDrawer.pathOptimization && report.shapes.size() > 1) {
+            PathOptimizer.PathPlan plan = pathOptimizer.plan(report.shapes);
+            if (plan != null) {
+                return plan;
+            }
+        }
+        for (SwiftBotShapeDrawer.Shape shape : report.shapes) {
+            if (pathOptimizer.plan(Collections.singletonList(shape)) == null) {
+                report.problems.add(new Problem(Kind.CANVAS, -1, shape.cacheKey() + " doesn't fit on the canvas."));
+            }
+        }
+        return null;
+    }
+}
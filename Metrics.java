@@ -0,0 +1,143 @@
+package Swiftbot;
+
+import java.io.*;
+import java.nio.file.*;
+import java.util.*;
+import java.util.concurrent.*;
+
+// Named timers for every stage of a job (QR capture and decode, parsing, planning, each motor
+// command, underlight feedback and whole shapes), so we can see where the seconds actually go.
+// Code being measured takes a start time with now() and passes it to Timer.record() when done,
+// which costs two System.nanoTime calls and one histogram update.
+// Timers can be written out as JSON or in the Prometheus text format, either on demand or
+// periodically to a file (replaced atomically so readers never see half a dump).
+class Metrics {
+    // Histogram range for times in ms: 1 microsecond to 10 minutes, within 1%
+    private static final double MIN_MS = 0.001;
+    private static final double MAX_MS = 600000;
+    private static final double RELATIVE_ERROR = 0.01;
+
+    private static final double[] QUANTILES = {0.5, 0.95, 0.99}; // Percentiles written out for each timer
+
+    private final Map<String, Timer> timers = new ConcurrentSkipListMap<>(); // Sorted by name for stable output
+    private ScheduledExecutorService dumper; // Writes the periodic dump (null when not running)
+
+    // Time spent in one stage, recorded as a histogram of durations in ms
+    static class Timer {
+        private final QuantileSketch sketch = new QuantileSketch(MIN_MS, MAX_MS, RELATIVE_ERROR);
+        private double totalMs = 0; // Sum of every duration
+
+        // Method to record the time since a start time taken with Metrics.now()
+        void record(long startNanos) {
+            recordMs((System.nanoTime() - startNanos) / 1e6);
+        }
+
+        // Method to record a duration in ms
+        synchronized void recordMs(double ms) {
+            sketch.add(ms);
+            totalMs += ms;
+        }
+
+        synchronized long getCount() {
+            return sketch.getCount();
+        }
+
+        synchronized double getTotalMs() {
+            return totalMs;
+        }
+
+        synchronized double getQuantileMs(double q) {
+            return sketch.quantile(q);
+        }
+
+        synchronized double getMaxMs() {
+            return sketch.getMax();
+        }
+    }
+
+    // Method to get a start time for a span
+    static long now() {
+        return System.nanoTime();
+    }
+
+    // Method to get the timer with the given name, creating it on first use
+    Timer timer(String name) {
+        return timers.computeIfAbsent(name, key -> new Timer());
+    }
+
+    // Method to write every timer as one JSON object: {"name": {"count": .., "sum_ms": .., ...}, ...}
+    void writeJson(Writer out) throws IOException {
+        StringBuilder json = new StringBuilder("{\n");
+        Iterator<Map.Entry<String, Timer>> entries = timers.entrySet().iterator();
+        while (entries.hasNext()) {
+            Map.Entry<String, Timer> entry = entries.next();
+            Timer timer = entry.getValue();
+            synchronized (timer) {
+                json.append(String.format(Locale.ROOT, "  \"%s\": {\"count\": %d, \"sum_ms\": %.3f",
+                        entry.getKey(), timer.getCount(), timer.getTotalMs()));
+                for (double q : QUANTILES) {
+                    json.append(String.format(Locale.ROOT, ", \"p%d_ms\": %.3f", Math.round(q * 100), timer.getQuantileMs(q)));
+                }
+                json.append(String.format(Locale.ROOT, ", \"max_ms\": %.3f}", timer.getMaxMs()));
+            }
+            json.append(entries.hasNext() ? ",\n" : "\n");
+        }
+        out.write(json.append("}\n").toString());
+    }
+
+    // Method to write every timer as a Prometheus summary, in seconds
+    void writePrometheus(Writer out) throws IOException {
+        StringBuilder text = new StringBuilder();
+        for (Map.Entry<String, Timer> entry : timers.entrySet()) {
+            String name = "swiftbot_" + entry.getKey() + "_seconds";
+            Timer timer = entry.getValue();
+            synchronized (timer) {
+                text.append("# TYPE ").append(name).append(" summary\n");
+                for (double q : QUANTILES) {
+                    text.append(String.format(Locale.ROOT, "%s{quantile=\"%s\"} %.6f%n", name, q, timer.getQuantileMs(q) / 1000));
+                }
+                text.append(String.format(Locale.ROOT, "%s_sum %.6f%n", name, timer.getTotalMs() / 1000));
+                text.append(String.format(Locale.ROOT, "%s_count %d%n", name, timer.getCount()));
+            }
+        }
+        out.write(text.toString());
+    }
+
+    // Method to write every timer to a file, as Prometheus text if the name ends in .prom and JSON otherwise
+    void writeTo(Path file) throws IOException {
+        Path temp = file.resolveSibling(file.getFileName() + ".tmp");
+        try (Writer writer = Files.newBufferedWriter(temp)) {
+            if (file.toString().endsWith(".prom")) {
+                writePrometheus(writer);
+            } else {
+                writeJson(writer);
+            }
+        }
+        Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    // Method to start writing the timers to a file in the background every periodMs
+    synchronized void startDump(Path file, long periodMs) {
+        stopDump();
+        dumper = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "metrics-dump");
+            thread.setDaemon(true);
+            return thread;
+        });
+        dumper.scheduleAtFixedRate(() -> {
+            try {
+                writeTo(file);
+            } catch (IOException e) {
+                System.out.println("Error writing metrics: " + e.getMessage());
+            }
+        }, periodMs, periodMs, TimeUnit.MILLISECONDS);
+    }
+
+    // Method to stop the periodic dump
+    synchronized void stopDump() {
+        if (dumper != null) {
+            dumper.shutdownNow();
+            dumper = null;
+        }
+    }
+}
@@ -0,0 +1,18 @@
+package Swiftbot;
+
+// Interface for anything that can drive the SwiftBot's wheels and underlights.
+// The drawer only talks to this, so the same drawing logic runs on the real robot or in a simulation.
+interface MotionBackend {
+
+    // Drive the left and right wheels at the given speeds (-100 to 100) for the given time
+    void move(int leftSpeed, int rightSpeed, int timeMs) throws InterruptedException;
+
+    // Turn all underlights on with the given RGB colour
+    void fillUnderlights(int[] rgb);
+
+    // Turn all underlights off
+    void disableUnderlights();
+
+    // Wait for the given time (lets a simulation compress waits as well as moves)
+    void pause(long timeMs) throws InterruptedException;
+}
@@ -0,0 +1,21 @@
+package Swiftbot;
+
+// Motion backend that ignores every command, for timing the drawing logic on its own
+class NoOpMotionBackend implements MotionBackend {
+
+    @Override
+    public void move(int leftSpeed, int rightSpeed, int timeMs) {
+    }
+
+    @Override
+    public void fillUnderlights(int[] rgb) {
+    }
+
+    @Override
+    public void disableUnderlights() {
+    }
+
+    @Override
+    public void pause(long timeMs) {
+    }
+}
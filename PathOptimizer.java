@@ -0,0 +1,150 @@
+package Swiftbot;
+
+import java.util.*;
+
+// Plans where each shape of a job is drawn and in which order, instead of backing off 15 cm
+// between shapes and drawing wherever the robot ends up.
+//   1. Shapes are laid out on the canvas without overlapping, in rows (tallest shapes first).
+//   2. The drawing order is chosen to keep the travel between shapes short: nearest neighbour
+//      from the robot's starting point, then improved with 2-opt.
+//   3. Each transit is a turn towards the next start point, a straight move, and a turn back to
+//      the starting direction, so every shape is drawn facing the same way as before.
+// All distances are in cm actually driven on the floor.
+class PathOptimizer {
+    private final double canvasWidth; // Usable floor width in cm
+    private final double canvasHeight; // Usable floor depth in cm
+    private final double spacing; // Gap kept between shapes and around the edge in cm
+
+    PathOptimizer(double canvasWidth, double canvasHeight, double spacing) {
+        this.canvasWidth = canvasWidth;
+        this.canvasHeight = canvasHeight;
+        this.spacing = spacing;
+    }
+
+    // Planned job: the shapes in drawing order, and the transit before each of them
+    static class PathPlan {
+        final List<SwiftBotShapeDrawer.Shape> shapes = new ArrayList<>(); // Shapes in drawing order
+        final List<double[]> transits = new ArrayList<>(); // {turn degrees, distance cm, turn back degrees}
+        double transitCm = 0; // Total distance driven between shapes
+        double transitTimeMs = 0; // Estimated time spent on transits
+        double baselineTimeMs = 0; // Time the fixed 15 cm back-offs would have taken
+    }
+
+    // Method to lay out and order the shapes, or return null if they don't fit on the canvas
+    PathPlan plan(List<SwiftBotShapeDrawer.Shape> shapes) {
+        int n = shapes.size();
+        double[][] starts = layout(shapes);
+        if (starts == null) {
+            return null;
+        }
+
+        int[] order = nearestNeighbour(starts);
+        improveWithTwoOpt(order, starts);
+
+        CalibrationProfile calibration = SwiftBotShapeDrawer.getCalibration();
+        PathPlan plan = new PathPlan();
+        double x = 0, y = 0; // Robot starts at the corner of the canvas facing +x
+        for (int index : order) {
+            double dx = starts[index][0] - x, dy = starts[index][1] - y;
+            double distance = Math.hypot(dx, dy);
+            double bearing = distance > 0 ? Math.toDegrees(Math.atan2(dy, dx)) : 0;
+            plan.shapes.add(shapes.get(index));
+            plan.transits.add(new double[] {bearing, distance, -bearing});
+            plan.transitCm += distance;
+            plan.transitTimeMs += calibration.moveTime(distance) + 2 * calibration.turnTime(bearing);
+            x = starts[index][0];
+            y = starts[index][1];
+        }
+        plan.baselineTimeMs = (n - 1) * calibration.moveTime(15 * SwiftBotShapeDrawer.TRAVEL_SCALE_FACTOR);
+        return plan;
+    }
+
+    // Method to place the shapes in rows across the canvas
+    // Returns the start position {x, y} of each shape, or null if they don't all fit
+    private double[][] layout(List<SwiftBotShapeDrawer.Shape> shapes) {
+        int n = shapes.size();
+        double[][] boxes = new double[n][];
+        Integer[] byHeight = new Integer[n];
+        for (int i = 0; i < n; i++) {
+            boxes[i] = shapes.get(i).footprint();
+            byHeight[i] = i;
+        }
+        Arrays.sort(byHeight, (p, q) -> Double.compare(boxes[q][3] - boxes[q][1], boxes[p][3] - boxes[p][1]));
+
+        double[][] starts = new double[n][];
+        double rowX = spacing, rowY = spacing, rowHeight = 0;
+        for (int i : byHeight) {
+            double width = boxes[i][2] - boxes[i][0];
+            double height = boxes[i][3] - boxes[i][1];
+            if (rowX + width + spacing > canvasWidth && rowX > spacing) { // Start a new row
+                rowY += rowHeight + spacing;
+                rowX = spacing;
+                rowHeight = 0;
+            }
+            if (rowX + width + spacing > canvasWidth || rowY + height + spacing > canvasHeight) {
+                return null;
+            }
+            starts[i] = new double[] {rowX - boxes[i][0], rowY - boxes[i][1]}; // Shift so the box sits at (rowX, rowY)
+            rowX += width + spacing;
+            rowHeight = Math.max(rowHeight, height);
+        }
+        return starts;
+    }
+
+    // Method to build an order by always going to the closest shape not yet drawn
+    private static int[] nearestNeighbour(double[][] starts) {
+        int n = starts.length;
+        int[] order = new int[n];
+        boolean[] used = new boolean[n];
+        double x = 0, y = 0;
+        for (int k = 0; k < n; k++) {
+            int best = -1;
+            double bestDistance = Double.MAX_VALUE;
+            for (int i = 0; i < n; i++) {
+                double d = Math.hypot(starts[i][0] - x, starts[i][1] - y);
+                if (!used[i] && d < bestDistance) {
+                    best = i;
+                    bestDistance = d;
+                }
+            }
+            used[best] = true;
+            order[k] = best;
+            x = starts[best][0];
+            y = starts[best][1];
+        }
+        return order;
+    }
+
+    // Method to reverse parts of the order while that shortens the path (the path starts at the origin and is open at the end)
+    private static void improveWithTwoOpt(int[] order, double[][] starts) {
+        int n = order.length;
+        boolean improved = true;
+        while (improved) {
+            improved = false;
+            for (int i = 0; i < n - 1; i++) {
+                for (int j = i + 1; j < n; j++) {
+                    double[] before = i == 0 ? new double[] {0, 0} : starts[order[i - 1]];
+                    double[] first = starts[order[i]];
+                    double[] last = starts[order[j]];
+                    double delta = distance(before, last) - distance(before, first);
+                    if (j < n - 1) {
+                        double[] after = starts[order[j + 1]];
+                        delta += distance(first, after) - distance(last, after);
+                    }
+                    if (delta < -1e-9) {
+                        for (int p = i, q = j; p < q; p++, q--) {
+                            int t = order[p];
+                            order[p] = order[q];
+                            order[q] = t;
+                        }
+                        improved = true;
+                    }
+                }
+            }
+        }
+    }
+
+    private static double distance(double[] p, double[] q) {
+        return Math.hypot(p[0] - q[0], p[1] - q[1]);
+    }
+}
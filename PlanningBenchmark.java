@@ -0,0 +1,134 @@
+package Swiftbot;
+
+import java.io.*;
+import java.util.*;
+
+// Micro-benchmarks for command scanning, validation, area calculations and shape planning,
+// run against a no-op motion backend so only the drawing logic is timed.
+// Each benchmark is warmed up first and then measured over several rounds; the best round is
+// reported, as it is the least disturbed by GC and JIT activity.
+//
+// This is a hand-written timing loop, not JMH (the project has no build tool to pull JMH in).
+// The numbers don't have JMH's protections, so use them to compare changes on the same machine,
+// not as absolute costs:
+//   - all benchmarks run in one JVM, so code compiled for one can affect the next (no forks)
+//   - warm-up is a fixed number of rounds, not checked for a steady state
+//   - only each call's return value goes to the sink; work inside a call whose result isn't
+//     returned can still be removed by the JIT (there is no Blackhole)
+//   - the timed loop is compiled with on-stack replacement, unlike a real caller
+//
+// Usage: java Swiftbot.PlanningBenchmark [max shapes per command]
+public class PlanningBenchmark {
+    private static final int WARMUP_ROUNDS = 5;
+    private static final int MEASURED_ROUNDS = 10;
+    private static final long ROUND_NANOS = 200_000_000L; // Each round runs for at least 200 ms
+
+    private static volatile double sink; // Results are written here so the JIT can't remove the work
+
+    // A piece of code to time; returns a value that is fed to the sink
+    interface Benchmark {
+        double run();
+    }
+
+    public static void main(String[] args) {
+        int maxShapes = args.length > 0 ? Integer.parseInt(args[0]) : 5000;
+        SwiftBotShapeDrawer.setMotionBackend(new NoOpMotionBackend());
+        SwiftBotShapeDrawer.getJobValidator().setTimeBudgetMs(0); // Large payloads would take hours to draw on a robot
+        PrintStream console = System.out;
+        System.setOut(new PrintStream(OutputStream.nullOutputStream())); // Drawing output is not timed
+
+        List<String> results = new ArrayList<>();
+        try {
+            Random random = new Random(42);
+            int[][] triangles = new int[1024][];
+            for (int i = 0; i < triangles.length; i++) {
+                triangles[i] = new int[] {10 + random.nextInt(80), 10 + random.nextInt(80), 10 + random.nextInt(80)};
+            }
+
+            results.add(measure("validateTriangle", 1, () -> {
+                int valid = 0;
+                for (int[] t : triangles) {
+                    if (SwiftBotShapeDrawer.validateTriangle(t[0], t[1], t[2])) {
+                        valid++;
+                    }
+                }
+                return valid;
+            }, triangles.length));
+
+            results.add(measure("Heron's formula area", 1, () -> {
+                double total = 0;
+                for (int[] t : triangles) {
+                    total += new SwiftBotShapeDrawer.Triangle(t[0], t[1], t[2]).area;
+                }
+                return total;
+            }, triangles.length));
+
+            results.add(measure("Square.draw", 1, () -> draw(new SwiftBotShapeDrawer.Square(30)), 1));
+            results.add(measure("Triangle.draw", 1, () -> draw(new SwiftBotShapeDrawer.Triangle(30, 40, 50)), 1));
+            results.add(measure("Circle.draw", 1, () -> draw(new SwiftBotShapeDrawer.Circle(40)), 1));
+
+            ShapeCommandBuffer buffer = new ShapeCommandBuffer();
+            for (int shapes = 1; shapes <= maxShapes; shapes *= 10) {
+                String command = buildCommand(shapes);
+                int count = shapes;
+                results.add(measure("ShapeCommandScanner", shapes, () -> {
+                    ShapeCommandScanner.scan(command, count, buffer);
+                    return buffer.size();
+                }, 1));
+                results.add(measure("processInput", shapes, () -> {
+                    if (!SwiftBotShapeDrawer.processInput(command, count)) { // Would only time the rejection
+                        throw new IllegalStateException("processInput rejected the " + count + "-shape payload");
+                    }
+                    return command.length();
+                }, 1));
+            }
+        } finally {
+            System.setOut(console);
+        }
+
+        System.out.println(String.format("%-24s %8s %14s %14s", "Benchmark", "Shapes", "ns/op", "ops/s"));
+        for (String line : results) {
+            System.out.println(line);
+        }
+        System.out.println("Hand-written timing loop, not JMH: compare runs on the same machine only.");
+    }
+
+    // Method to draw a shape and return something the JIT has to keep
+    private static double draw(SwiftBotShapeDrawer.Shape shape) {
+        shape.draw();
+        return shape.timeMs;
+    }
+
+    // Method to build a command with the given number of shapes, cycling through all shape types
+    static String buildCommand(int shapes) {
+        String[] samples = {"S-30", "T-30-40-50", "C-40", "S-85", "T-20-20-20"};
+        StringBuilder command = new StringBuilder();
+        for (int i = 0; i < shapes; i++) {
+            if (i > 0) {
+                command.append('&');
+            }
+            command.append(samples[i % samples.length]);
+        }
+        return command.toString();
+    }
+
+    // Method to time a benchmark and format the result (operationsPerRun is how many operations one run covers)
+    private static String measure(String name, int shapes, Benchmark benchmark, int operationsPerRun) {
+        double best = Double.MAX_VALUE;
+        for (int round = 0; round < WARMUP_ROUNDS + MEASURED_ROUNDS; round++) {
+            long runs = 0;
+            long start = System.nanoTime();
+            long elapsed;
+            do {
+                sink += benchmark.run();
+                runs++;
+                elapsed = System.nanoTime() - start;
+            } while (elapsed < ROUND_NANOS);
+
+            if (round >= WARMUP_ROUNDS) {
+                best = Math.min(best, (double) elapsed / (runs * operationsPerRun));
+            }
+        }
+        return String.format("%-24s %8d %14.1f %14.0f", name, shapes, best, 1e9 / best);
+    }
+}
@@ -0,0 +1,42 @@
+package Swiftbot;
+
+// Position (cm) and heading (radians, counter-clockwise from the starting direction) of the robot
+class Pose {
+    double x; // Position along the starting direction in cm
+    double y; // Position to the left of the starting direction in cm
+    double heading; // Heading in radians
+
+    Pose() {
+        this(0, 0, 0);
+    }
+
+    Pose(double x, double y, double heading) {
+        this.x = x;
+        this.y = y;
+        this.heading = heading;
+    }
+
+    // Method to copy this pose
+    Pose copy() {
+        return new Pose(x, y, heading);
+    }
+
+    // Method to get the straight-line distance to another pose in cm
+    double distanceTo(Pose other) {
+        return Math.hypot(other.x - x, other.y - y);
+    }
+
+    // Method to get the smallest heading difference to another pose in degrees (0 - 180)
+    double headingErrorTo(Pose other) {
+        double diff = Math.toDegrees(other.heading - heading) % 360.0;
+        if (diff < 0) {
+            diff += 360.0;
+        }
+        return diff > 180.0 ? 360.0 - diff : diff;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("(%.2f cm, %.2f cm, %.1f deg)", x, y, Math.toDegrees(heading));
+    }
+}
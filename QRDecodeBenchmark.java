@@ -0,0 +1,64 @@
+package Swiftbot;
+
+import java.awt.image.BufferedImage;
+import java.lang.management.ManagementFactory;
+import swiftbot.SwiftBotAPI;
+
+// Compares the plain capture-and-decode loop with the region-of-interest decoder on the robot.
+// Hold a QR code in front of the camera while it runs. Prints the bytes allocated per frame and
+// the average decode time for each mode.
+//
+// Usage: java Swiftbot.QRDecodeBenchmark [frames]
+public class QRDecodeBenchmark {
+
+    public static void main(String[] args) {
+        int frames = args.length > 0 ? Integer.parseInt(args[0]) : 100;
+        SwiftBotAPI swiftBot = new SwiftBotAPI();
+        QRSource camera = new QRSource() {
+            @Override
+            public BufferedImage captureFrame() {
+                return swiftBot.getQRImage();
+            }
+
+            @Override
+            public String decode(BufferedImage frame) {
+                return swiftBot.decodeQRImage(frame);
+            }
+        };
+
+        run("Full frame", camera, frames);
+        run("Region of interest", new RegionOfInterestDecoder(camera, 0.5, 4), frames);
+    }
+
+    // Method to capture and decode frames with one source and print allocation and latency
+    static void run(String name, QRSource source, int frames) {
+        long allocatedBefore = allocatedBytes();
+        long decodeNanos = 0;
+        int found = 0;
+
+        for (int i = 0; i < frames; i++) {
+            BufferedImage frame = source.captureFrame();
+            long start = System.nanoTime();
+            if (!source.decode(frame).isEmpty()) {
+                found++;
+            }
+            decodeNanos += System.nanoTime() - start;
+        }
+        long allocated = allocatedBytes() - allocatedBefore;
+
+        System.out.println("\n" + name + " (" + frames + " frames, " + found + " decoded)");
+        if (allocatedBefore >= 0) {
+            System.out.printf("- Allocated: %.1f KB per frame%n", allocated / 1024.0 / frames);
+        }
+        System.out.printf("- Average decode time: %.2f ms%n", decodeNanos / 1e6 / frames);
+    }
+
+    // Method to get the bytes allocated by this thread so far, or -1 if the JVM can't tell
+    private static long allocatedBytes() {
+        java.lang.management.ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        if (threads instanceof com.sun.management.ThreadMXBean) {
+            return ((com.sun.management.ThreadMXBean) threads).getThreadAllocatedBytes(Thread.currentThread().getId());
+        }
+        return -1;
+    }
+}
@@ -0,0 +1,160 @@
+package Swiftbot;
+
+import java.awt.image.BufferedImage;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Predicate;
+
+// Two-stage QR scanner: a capture thread grabs frames at a fixed rate into a small queue, and a
+// pool of decode workers takes frames from it. When the decoders fall behind, the oldest frame
+// is dropped so they always work on the most recent picture. The scan stops at the first
+// successful decode of a code that is accepted; codes that are rejected (e.g. a job that fails
+// its pre-flight checks) are skipped and the camera keeps looking.
+class QRScanPipeline {
+    private final QRSource source; // Camera to capture and decode frames with
+    private final long frameIntervalNanos; // Time between captured frames
+    private final int queueCapacity; // Maximum number of frames waiting to be decoded
+    private final int decodeThreads; // Number of decode workers
+    private final Metrics.Timer captureTimer; // Time taken to grab each frame
+    private final Metrics.Timer decodeTimer; // Time taken to decode each frame
+    private final Predicate<String> accept; // Decides whether a decoded code ends the scan
+
+    // Counters kept across all scans (take the difference to report a single scan)
+    private final AtomicLong framesCaptured = new AtomicLong();
+    private final AtomicLong framesDecoded = new AtomicLong();
+    private final AtomicLong framesDropped = new AtomicLong();
+    private final AtomicLong duplicatesSuppressed = new AtomicLong(); // Same code decoded again after the scan had a result
+    private final AtomicLong otherCodesIgnored = new AtomicLong(); // Different code decoded after the scan had a result
+    private final AtomicLong codesRejected = new AtomicLong();
+
+    QRScanPipeline(QRSource source, int framesPerSecond, int queueCapacity, int decodeThreads, Metrics metrics) {
+        this(source, framesPerSecond, queueCapacity, decodeThreads, metrics, payload -> true);
+    }
+
+    // accept: called on the decode threads with every decoded code, returns false to skip it
+    QRScanPipeline(QRSource source, int framesPerSecond, int queueCapacity, int decodeThreads, Metrics metrics,
+            Predicate<String> accept) {
+        if (framesPerSecond <= 0 || queueCapacity <= 0 || decodeThreads <= 0) {
+            throw new IllegalArgumentException("Frame rate, queue capacity and decode threads must be positive");
+        }
+        this.source = source;
+        this.frameIntervalNanos = 1_000_000_000L / framesPerSecond;
+        this.queueCapacity = queueCapacity;
+        this.decodeThreads = decodeThreads;
+        this.captureTimer = metrics.timer("qr_capture");
+        this.decodeTimer = metrics.timer("qr_decode");
+        this.accept = accept;
+    }
+
+    // Method to scan until a QR code is decoded or the timeout runs out
+    // Returns the decoded text, or an empty string if nothing was found in time
+    String scan(long timeoutMs) throws InterruptedException {
+        BlockingQueue<BufferedImage> frames = new ArrayBlockingQueue<>(queueCapacity);
+        AtomicReference<String> result = new AtomicReference<>();
+        CountDownLatch found = new CountDownLatch(1);
+        ExecutorService workers = Executors.newFixedThreadPool(decodeThreads + 1, runnable -> {
+            Thread thread = new Thread(runnable, "qr-scan");
+            thread.setDaemon(true);
+            return thread;
+        });
+
+        try {
+            workers.execute(() -> captureLoop(frames, found));
+            for (int i = 0; i < decodeThreads; i++) {
+                workers.execute(() -> decodeLoop(frames, result, found));
+            }
+            found.await(timeoutMs, TimeUnit.MILLISECONDS);
+        } finally {
+            found.countDown(); // Tells every thread to stop
+            workers.shutdownNow();
+            workers.awaitTermination(1, TimeUnit.SECONDS);
+        }
+
+        String payload = result.get();
+        return payload == null ? "" : payload;
+    }
+
+    // Method run by the capture thread: grab frames at the configured rate
+    private void captureLoop(BlockingQueue<BufferedImage> frames, CountDownLatch found) {
+        long nextFrame = System.nanoTime();
+        while (found.getCount() > 0 && !Thread.currentThread().isInterrupted()) {
+            long start = Metrics.now();
+            BufferedImage frame = source.captureFrame();
+            captureTimer.record(start);
+            if (frame != null) {
+                framesCaptured.incrementAndGet();
+                while (!frames.offer(frame)) {
+                    if (frames.poll() != null) { // Drop the oldest frame to make room
+                        framesDropped.incrementAndGet();
+                    }
+                }
+            }
+
+            nextFrame += frameIntervalNanos;
+            long wait = nextFrame - System.nanoTime();
+            if (wait > 0) {
+                LockSupport.parkNanos(wait);
+            } else {
+                nextFrame = System.nanoTime(); // Capture is slower than the frame rate, don't try to catch up
+            }
+        }
+    }
+
+    // Method run by each decode worker: decode frames until one of the workers finds a code
+    private void decodeLoop(BlockingQueue<BufferedImage> frames, AtomicReference<String> result, CountDownLatch found) {
+        try {
+            while (found.getCount() > 0) {
+                BufferedImage frame = frames.poll(frameIntervalNanos, TimeUnit.NANOSECONDS);
+                if (frame == null) {
+                    continue;
+                }
+                long start = Metrics.now();
+                String payload = source.decode(frame);
+                decodeTimer.record(start);
+                framesDecoded.incrementAndGet();
+                if (payload == null || payload.isEmpty()) {
+                    continue;
+                }
+                if (!accept.test(payload)) {
+                    codesRejected.incrementAndGet(); // Keep looking for a code that can be used
+                    continue;
+                }
+                if (result.compareAndSet(null, payload)) {
+                    found.countDown(); // First success ends the scan
+                } else if (payload.equals(result.get())) {
+                    duplicatesSuppressed.incrementAndGet(); // Another worker already reported this code
+                } else {
+                    otherCodesIgnored.incrementAndGet(); // Another worker reported a different code first
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    long getFramesCaptured() {
+        return framesCaptured.get();
+    }
+
+    long getFramesDecoded() {
+        return framesDecoded.get();
+    }
+
+    long getFramesDropped() {
+        return framesDropped.get();
+    }
+
+    long getDuplicatesSuppressed() {
+        return duplicatesSuppressed.get();
+    }
+
+    long getOtherCodesIgnored() {
+        return otherCodesIgnored.get();
+    }
+
+    long getCodesRejected() {
+        return codesRejected.get();
+    }
+}
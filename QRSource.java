@@ -0,0 +1,13 @@
+package Swiftbot;
+
+import java.awt.image.BufferedImage;
+
+// Interface for a camera that can capture frames and decode QR codes from them
+interface QRSource {
+
+    // Capture one frame from the camera
+    BufferedImage captureFrame();
+
+    // Decode a QR code from a frame, returning an empty string when none is found
+    String decode(BufferedImage frame);
+}
@@ -0,0 +1,80 @@
+package Swiftbot;
+
+// Fixed-memory histogram for estimating percentiles of a stream of positive values.
+// Buckets grow geometrically, so every estimate is within the given relative error of a value
+// that was actually recorded. Adding a value is O(1) and the memory used never grows.
+class QuantileSketch {
+    private final double minValue; // Smallest value with its own bucket (smaller values share bucket 0)
+    private final double logGamma; // Log of the ratio between neighbouring bucket bounds
+    private final long[] counts; // Number of values in each bucket
+    private long total = 0; // Number of values recorded
+    private double min = Double.POSITIVE_INFINITY; // Smallest value recorded
+    private double max = Double.NEGATIVE_INFINITY; // Largest value recorded
+
+    QuantileSketch(double minValue, double maxValue, double relativeError) {
+        if (!(minValue > 0 && maxValue > minValue && relativeError > 0 && relativeError < 1)) {
+            throw new IllegalArgumentException("Invalid sketch range or error");
+        }
+        this.minValue = minValue;
+        this.logGamma = Math.log((1 + relativeError) / (1 - relativeError));
+        this.counts = new long[bucketFor(maxValue) + 2]; // Last bucket holds values above the range
+    }
+
+    // Method to record one value
+    void add(double value) {
+        counts[Math.min(bucketFor(value), counts.length - 1)]++;
+        total++;
+        min = Math.min(min, value);
+        max = Math.max(max, value);
+    }
+
+    // Method to add all values recorded by another sketch with the same settings
+    void merge(QuantileSketch other) {
+        if (other.counts.length != counts.length || other.minValue != minValue || other.logGamma != logGamma) {
+            throw new IllegalArgumentException("Sketches have different settings");
+        }
+        for (int i = 0; i < counts.length; i++) {
+            counts[i] += other.counts[i];
+        }
+        total += other.total;
+        min = Math.min(min, other.min);
+        max = Math.max(max, other.max);
+    }
+
+    // Method to estimate the value below which the given fraction (0 - 1) of values fall
+    double quantile(double q) {
+        if (total == 0) {
+            return 0;
+        }
+        long rank = (long) Math.ceil(q * total);
+        long seen = 0;
+        for (int i = 0; i < counts.length; i++) {
+            seen += counts[i];
+            if (seen >= rank && counts[i] > 0) {
+                double estimate = i == 0 ? minValue : minValue * Math.exp((i - 0.5) * logGamma); // Middle of the bucket
+                return Math.max(min, Math.min(max, estimate));
+            }
+        }
+        return max;
+    }
+
+    // Method to work out which bucket a value belongs in
+    private int bucketFor(double value) {
+        if (value <= minValue) {
+            return 0;
+        }
+        return 1 + (int) (Math.log(value / minValue) / logGamma);
+    }
+
+    long getCount() {
+        return total;
+    }
+
+    double getMin() {
+        return total == 0 ? 0 : min;
+    }
+
+    double getMax() {
+        return total == 0 ? 0 : max;
+    }
+}
@@ -0,0 +1,8 @@
+package Swiftbot;
+
+// Interface for a distance sensor facing the same way as the robot (the SwiftBot's ultrasound)
+interface RangeSensor {
+
+    // Measure the distance to the nearest obstacle in front, in cm
+    double distanceCm();
+}
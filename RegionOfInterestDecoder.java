@@ -0,0 +1,161 @@
+package Swiftbot;
+
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+// QR source that tries cheap decodes before the full frame:
+//   1. the region where the last code was found (a view of the frame, no copy),
+//   2. a downscaled grayscale copy drawn into a pooled buffer,
+//   3. the full frame, only when both of those miss.
+// After a successful decode the payload is returned straight away, and a background thread looks
+// for the smallest window that still decodes and remembers it as the region for the next frames.
+class RegionOfInterestDecoder implements QRSource {
+    private final QRSource camera; // Source that does the actual capture and decode
+    private final double scale; // Downscale factor for the grayscale copy (0 - 1)
+    private final FrameBufferPool pool; // Buffers for the grayscale copies
+
+    private volatile Rectangle region = null; // Where the last code was found, in frame coordinates
+    private final AtomicBoolean locating = new AtomicBoolean(); // Whether the region is being looked for
+    private final ExecutorService locator = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "qr-region");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    // How often each step decoded a code, and the time spent in decode calls
+    private final AtomicLong regionHits = new AtomicLong();
+    private final AtomicLong downscaledHits = new AtomicLong();
+    private final AtomicLong fullFrameHits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong decodeNanos = new AtomicLong();
+    private final AtomicLong decodes = new AtomicLong();
+
+    RegionOfInterestDecoder(QRSource camera, double scale, int poolSize) {
+        if (!(scale > 0 && scale <= 1)) {
+            throw new IllegalArgumentException("Scale must be between 0 and 1: " + scale);
+        }
+        this.camera = camera;
+        this.scale = scale;
+        this.pool = new FrameBufferPool(poolSize);
+    }
+
+    @Override
+    public BufferedImage captureFrame() {
+        return camera.captureFrame();
+    }
+
+    @Override
+    public String decode(BufferedImage frame) {
+        long start = System.nanoTime();
+        try {
+            Rectangle known = region;
+            if (known != null && fits(known, frame)) {
+                String payload = camera.decode(frame.getSubimage(known.x, known.y, known.width, known.height));
+                if (isFound(payload)) {
+                    regionHits.incrementAndGet();
+                    return payload;
+                }
+            }
+
+            int width = Math.max(1, (int) (frame.getWidth() * scale));
+            int height = Math.max(1, (int) (frame.getHeight() * scale));
+            BufferedImage gray = pool.acquire(width, height);
+            try {
+                Graphics2D g = gray.createGraphics();
+                g.drawImage(frame, 0, 0, width, height, null); // Downscale and convert to grayscale in one pass
+                g.dispose();
+                String payload = camera.decode(gray);
+                if (isFound(payload)) {
+                    downscaledHits.incrementAndGet();
+                    locateLater(frame, payload);
+                    return payload;
+                }
+            } finally {
+                pool.release(gray);
+            }
+
+            String payload = camera.decode(frame);
+            if (isFound(payload)) {
+                fullFrameHits.incrementAndGet();
+                locateLater(frame, payload);
+                return payload;
+            }
+            misses.incrementAndGet();
+            return "";
+        } finally {
+            decodeNanos.addAndGet(System.nanoTime() - start);
+            decodes.incrementAndGet();
+        }
+    }
+
+    // Method to check whether a decode found a code (the camera returns null or "" when it didn't)
+    private static boolean isFound(String payload) {
+        return payload != null && !payload.isEmpty();
+    }
+
+    // Method to look for the code's region on the background thread, so the payload can be returned
+    // without waiting for the extra decodes (skipped if a search is already running)
+    private void locateLater(BufferedImage frame, String payload) {
+        if (!locating.compareAndSet(false, true)) {
+            return;
+        }
+        locator.execute(() -> {
+            try {
+                region = locate(frame, payload);
+            } finally {
+                locating.set(false);
+            }
+        });
+    }
+
+    // Method to find a window of the frame (two thirds of each side) that still decodes to the payload
+    private Rectangle locate(BufferedImage frame, String payload) {
+        int w = frame.getWidth() * 2 / 3;
+        int h = frame.getHeight() * 2 / 3;
+        int[][] corners = {
+            {(frame.getWidth() - w) / 2, (frame.getHeight() - h) / 2}, // Centre first, where codes are usually held
+            {0, 0}, {frame.getWidth() - w, 0}, {0, frame.getHeight() - h}, {frame.getWidth() - w, frame.getHeight() - h}
+        };
+        for (int[] corner : corners) {
+            if (payload.equals(camera.decode(frame.getSubimage(corner[0], corner[1], w, h)))) {
+                return new Rectangle(corner[0], corner[1], w, h);
+            }
+        }
+        return null;
+    }
+
+    // Method to check that a region lies inside the frame
+    private static boolean fits(Rectangle r, BufferedImage frame) {
+        return r.x + r.width <= frame.getWidth() && r.y + r.height <= frame.getHeight();
+    }
+
+    long getRegionHits() {
+        return regionHits.get();
+    }
+
+    long getDownscaledHits() {
+        return downscaledHits.get();
+    }
+
+    long getFullFrameHits() {
+        return fullFrameHits.get();
+    }
+
+    long getMisses() {
+        return misses.get();
+    }
+
+    long getBufferAllocations() {
+        return pool.getAllocations();
+    }
+
+    // Method to get the average time spent decoding one frame in ms
+    double getAverageDecodeMs() {
+        long count = decodes.get();
+        return count == 0 ? 0 : decodeNanos.get() / 1e6 / count;
+    }
+}
@@ -0,0 +1,115 @@
+package Swiftbot;
+
+// Compact, reusable result of scanning a shape command string.
+// Each command is stored as a type code, up to three int parameters, the position where it
+// starts and an error code, all in primitive arrays that only grow when a longer program is
+// scanned. Error messages are only built when they are asked for.
+class ShapeCommandBuffer {
+    // Error codes for a single command
+    static final byte OK = 0;
+    static final byte INVALID_INPUT = 1; // Fewer than two '-' separated parts
+    static final byte INVALID_NUMBER = 2; // A side length or diameter is not a whole number
+    static final byte INVALID_SHAPE_TYPE = 3; // Shape letter is not S, T or C
+    static final byte INVALID_TRIANGLE_FORMAT = 4; // Triangle does not have exactly three sides
+
+    static final int PARAMS_PER_COMMAND = 3;
+
+    private byte[] types = new byte[8]; // Shape type codes (ShapeLogRecord.SQUARE etc.), 0 when invalid
+    private byte[] errors = new byte[8]; // Error code of each command
+    private int[] positions = new int[8]; // Index where each command starts, or where its error is
+    private int[] params = new int[8 * PARAMS_PER_COMMAND]; // Side lengths / diameter of each command
+    private int count = 0; // Number of commands
+    private int limitPosition = -1; // Index of the first command over the shape limit, -1 if within it
+    private int maxShapes = 0; // Shape limit used for the last scan
+
+    // Method to empty the buffer before a new scan
+    void clear(int maxShapes) {
+        this.count = 0;
+        this.limitPosition = -1;
+        this.maxShapes = maxShapes;
+    }
+
+    // Method to add a valid command
+    void add(byte type, int p0, int p1, int p2, int position) {
+        int i = next();
+        types[i] = type;
+        errors[i] = OK;
+        positions[i] = position;
+        params[i * PARAMS_PER_COMMAND] = p0;
+        params[i * PARAMS_PER_COMMAND + 1] = p1;
+        params[i * PARAMS_PER_COMMAND + 2] = p2;
+    }
+
+    // Method to add a command that could not be scanned
+    void addError(byte error, int position) {
+        int i = next();
+        types[i] = 0;
+        errors[i] = error;
+        positions[i] = position;
+    }
+
+    // Method to mark the program as having more shapes than allowed
+    void limitExceeded(int position) {
+        limitPosition = position;
+    }
+
+    private int next() {
+        if (count == types.length) {
+            int capacity = count * 2;
+            types = java.util.Arrays.copyOf(types, capacity);
+            errors = java.util.Arrays.copyOf(errors, capacity);
+            positions = java.util.Arrays.copyOf(positions, capacity);
+            params = java.util.Arrays.copyOf(params, capacity * PARAMS_PER_COMMAND);
+        }
+        return count++;
+    }
+
+    int size() {
+        return count;
+    }
+
+    byte type(int command) {
+        return types[command];
+    }
+
+    byte error(int command) {
+        return errors[command];
+    }
+
+    int position(int command) {
+        return positions[command];
+    }
+
+    int param(int command, int index) {
+        return params[command * PARAMS_PER_COMMAND + index];
+    }
+
+    boolean isLimitExceeded() {
+        return limitPosition >= 0;
+    }
+
+    int getLimitPosition() {
+        return limitPosition;
+    }
+
+    int getMaxShapes() {
+        return maxShapes;
+    }
+
+    // Method to describe a command's error the way the drawer reports it
+    String errorMessage(int command) {
+        int number = command + 1;
+        switch (errors[command]) {
+            case INVALID_INPUT:
+                return "Invalid input detected in command " + number + " (at character " + (positions[command] + 1) + ")";
+            case INVALID_NUMBER:
+                return "Invalid number format in command " + number + " (at character " + (positions[command] + 1) + ")";
+            case INVALID_SHAPE_TYPE:
+                return "Invalid Shape Type in command " + number + " (at character " + (positions[command] + 1) + ")";
+            case INVALID_TRIANGLE_FORMAT:
+                return "Invalid Triangle format in command " + number + " (at character " + (positions[command] + 1) + ")";
+            default:
+                return "";
+        }
+    }
+}
@@ -0,0 +1,146 @@
+package Swiftbot;
+
+// Single-pass scanner for the shape command language, e.g. "S-30&T-20-30-40&C-40".
+// Commands are separated by '&' and their parts by '-'; the first part is the shape letter
+// (S, T or C, any case) and the rest are whole numbers. Whitespace around a command is ignored.
+// The scanner reads the characters once, creates no objects, and writes the commands into a
+// ShapeCommandBuffer.
+class ShapeCommandScanner {
+
+    private ShapeCommandScanner() {
+    }
+
+    // Method to scan a program into the buffer, allowing at most maxShapes commands
+    static void scan(CharSequence input, int maxShapes, ShapeCommandBuffer out) {
+        out.clear(maxShapes);
+        int end = input.length();
+        while (end > 0 && input.charAt(end - 1) == '&') {
+            end--; // Trailing empty commands are ignored
+        }
+        if (end == 0 && input.length() > 0) {
+            return; // Only separators, no commands at all
+        }
+
+        int start = 0;
+        int commands = 0;
+        while (true) {
+            int stop = start;
+            while (stop < end && input.charAt(stop) != '&') {
+                stop++;
+            }
+            if (++commands > maxShapes) {
+                out.limitExceeded(start);
+                return;
+            }
+            scanCommand(input, start, stop, out);
+            if (stop >= end) {
+                return;
+            }
+            start = stop + 1;
+        }
+    }
+
+    // Method to scan one command between start (inclusive) and stop (exclusive)
+    private static void scanCommand(CharSequence input, int start, int stop, ShapeCommandBuffer out) {
+        while (start < stop && input.charAt(start) <= ' ') {
+            start++; // Trim leading whitespace
+        }
+        while (stop > start && input.charAt(stop - 1) <= ' ') {
+            stop--; // Trim trailing whitespace
+        }
+
+        // Count the parts, ignoring empty parts at the end (so "S-30-" is the same as "S-30")
+        int parts = 0, lastNonEmpty = 0;
+        int partStart = start;
+        for (int i = start; i <= stop; i++) {
+            if (i == stop || input.charAt(i) == '-') {
+                parts++;
+                if (i > partStart) {
+                    lastNonEmpty = parts;
+                }
+                partStart = i + 1;
+            }
+        }
+        parts = lastNonEmpty;
+
+        if (parts < 2) {
+            out.addError(ShapeCommandBuffer.INVALID_INPUT, start);
+            return;
+        }
+
+        byte type = 0;
+        if (input.charAt(start + 1) == '-') { // Shape letter must be a single character
+            switch (input.charAt(start)) {
+                case 'S':
+                case 's':
+                    type = ShapeLogRecord.SQUARE;
+                    break;
+                case 'T':
+                case 't':
+                    type = ShapeLogRecord.TRIANGLE;
+                    break;
+                case 'C':
+                case 'c':
+                    type = ShapeLogRecord.CIRCLE;
+                    break;
+                default:
+                    break;
+            }
+        }
+        if (type == 0) {
+            out.addError(ShapeCommandBuffer.INVALID_SHAPE_TYPE, start);
+            return;
+        }
+        if (type == ShapeLogRecord.TRIANGLE && parts != 4) {
+            out.addError(ShapeCommandBuffer.INVALID_TRIANGLE_FORMAT, start);
+            return;
+        }
+
+        // Parse the numbers that follow the shape letter (extra parts after a square or circle are ignored)
+        int needed = type == ShapeLogRecord.TRIANGLE ? 3 : 1;
+        int p0 = 0, p1 = 0, p2 = 0;
+        int pos = start + 2;
+        for (int n = 0; n < needed; n++) {
+            int partEnd = pos;
+            while (partEnd < stop && input.charAt(partEnd) != '-') {
+                partEnd++;
+            }
+            long value = parseNumber(input, pos, partEnd);
+            if (value < 0) {
+                out.addError(ShapeCommandBuffer.INVALID_NUMBER, pos);
+                return;
+            }
+            if (n == 0) {
+                p0 = (int) value;
+            } else if (n == 1) {
+                p1 = (int) value;
+            } else {
+                p2 = (int) value;
+            }
+            pos = partEnd + 1;
+        }
+        out.add(type, p0, p1, p2, start);
+    }
+
+    // Method to parse a non-negative int between from and to, returning -1 if it isn't one
+    private static long parseNumber(CharSequence input, int from, int to) {
+        if (from < to && input.charAt(from) == '+') {
+            from++; // Integer.parseInt accepts a leading plus, so the scanner does too
+        }
+        if (from >= to) {
+            return -1;
+        }
+        long value = 0;
+        for (int i = from; i < to; i++) {
+            char c = input.charAt(i);
+            if (c < '0' || c > '9') {
+                return -1;
+            }
+            value = value * 10 + (c - '0');
+            if (value > Integer.MAX_VALUE) {
+                return -1;
+            }
+        }
+        return value;
+    }
+}
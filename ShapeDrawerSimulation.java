@@ -0,0 +1,64 @@
+package Swiftbot;
+
+import java.io.*;
+
+// Headless runner that replays shape commands through processInput on a simulated robot.
+// Reports how many jobs per second the planner gets through and how far each job ends from
+// where it started (the closure error for single-shape jobs).
+//
+// Usage: java Swiftbot.ShapeDrawerSimulation <repetitions> <compression|max> <command> [command ...]
+//   e.g. java Swiftbot.ShapeDrawerSimulation 1000 max S-30 T-30-40-50 C-40
+public class ShapeDrawerSimulation {
+
+    public static void main(String[] args) throws Exception {
+        if (args.length < 3) {
+            System.out.println("Usage: ShapeDrawerSimulation <repetitions> <compression|max> <command> [command ...]");
+            return;
+        }
+        int repetitions = Integer.parseInt(args[0]);
+        double compression = args[1].equalsIgnoreCase("max") ? Double.POSITIVE_INFINITY : Double.parseDouble(args[1]);
+
+        SimulatedMotionBackend simulator = new SimulatedMotionBackend(compression);
+        SwiftBotShapeDrawer.setMotionBackend(simulator);
+
+        for (int i = 2; i < args.length; i++) {
+            runJob(simulator, args[i], repetitions);
+        }
+        SwiftBotShapeDrawer.closeDrawer(); // Finish the path previews if -Dswiftbot.previewFolder was given
+        SwiftBotShapeDrawer.closeMetrics(); // Write the timings if -Dswiftbot.metricsFile was given
+    }
+
+    // Method to replay one command many times and print the results
+    static void runJob(SimulatedMotionBackend simulator, String command, int repetitions) {
+        PrintStream console = System.out;
+        double positionError = 0, headingError = 0;
+        long moveCalls = 0;
+        double robotTimeMs = 0;
+
+        System.setOut(new PrintStream(OutputStream.nullOutputStream())); // Drawing output is not needed here
+        long start = System.nanoTime();
+        try {
+            for (int i = 0; i < repetitions; i++) {
+                simulator.reset();
+                SwiftBotShapeDrawer.processInput(command);
+                Pose end = simulator.getPose();
+                positionError += new Pose().distanceTo(end);
+                headingError += new Pose().headingErrorTo(end);
+                moveCalls += simulator.getMoveCalls();
+                robotTimeMs += simulator.getSimulatedTimeMs();
+            }
+        } finally {
+            System.setOut(console);
+        }
+        double elapsedSeconds = (System.nanoTime() - start) / 1e9;
+
+        console.println("\nJob: " + command + " (" + repetitions + " runs)");
+        console.printf("- Throughput: %.1f jobs/second%n", repetitions / elapsedSeconds);
+        console.printf("- Motor calls per job: %.1f%n", (double) moveCalls / repetitions);
+        console.printf("- Simulated robot time per job: %.2f seconds%n", robotTimeMs / repetitions / 1000.0);
+        console.printf("- End pose error: %.2f cm, %.1f degrees%n", positionError / repetitions, headingError / repetitions);
+        PrintWriter writer = new PrintWriter(console);
+        SwiftBotShapeDrawer.getTrajectoryCache().writeSummary(writer, "- ");
+        writer.flush();
+    }
+}
@@ -0,0 +1,352 @@
+package Swiftbot;
+
+import java.io.*;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.concurrent.atomic.AtomicLong;
+
+// One robot drawing shapes: its motion backend, underlight feedback, motor command count, drawing
+// statistics and (optionally) binary log. The interactive program drives a single worker;
+// FleetCoordinator runs one per robot so several robots can draw at once and keep their own
+// statistics. Planning (calibration, trajectory cache, path layout) is shared by every worker.
+class ShapeDrawerWorker {
+    private final String name; // Name used in reports, e.g. "bot-1"
+    private final MotionBackend motion; // Backend that carries out every movement
+    private final TrajectoryRecorder recorder; // Writes path previews (null when previews are off)
+    private final UnderlightFeedback feedback; // Underlight patterns, played in the background
+    private final ShapeStatistics statistics = new ShapeStatistics(); // Shapes drawn by this robot
+    private final AtomicLong motorCalls = new AtomicLong(); // Motor commands sent by this robot
+    private ShapeLogWriter shapeLog; // Binary log of every shape drawn (null when logging is off)
+    private ShapeLogRecord lastRecord; // Most recent shape, shown by saveLog()
+
+    // Job journal (only used inside a job, i.e. between beginJob and endJob)
+    private JobJournal journal; // Write-ahead journal of the job in progress (null when journalling is off)
+    private boolean inJob = false; // Whether a job is being drawn
+    private int jobShape = -1; // Shape of the job being drawn, numbered in drawing order (-1 before the first)
+    private int shapeCommand = -1; // Motor command of the shape being sent (-1 between shapes)
+    private int travelCommand = 0; // Motor commands sent so far on the way to the next shape
+    private JobJournal.Unfinished resume; // Where an unfinished job carries on (null when not resuming)
+
+    ShapeDrawerWorker(String name, MotionBackend backend, Metrics metrics) {
+        this(name, backend, metrics, null);
+    }
+
+    // previewFolder: where to write path previews of everything drawn, or null for none
+    ShapeDrawerWorker(String name, MotionBackend backend, Metrics metrics, Path previewFolder) {
+        this.name = name;
+        MotionBackend timed = new TimedMotionBackend(backend, metrics); // Time every motor command and underlight change
+        TrajectoryRecorder previews = null;
+        if (previewFolder != null) {
+            try {
+                previews = new TrajectoryRecorder(timed, previewFolder, SwiftBotShapeDrawer.CLOSURE_WARNING_CM,
+                        SwiftBotShapeDrawer.loadReferenceProfile());
+            } catch (IOException e) {
+                System.out.println("Error creating preview folder, previews are off: " + e.getMessage());
+            }
+        }
+        this.recorder = previews;
+        this.motion = previews != null ? previews : timed; // Record the path of every motor command
+        this.feedback = new UnderlightFeedback(motion);
+    }
+
+    String getName() {
+        return name;
+    }
+
+    MotionBackend getMotion() {
+        return motion;
+    }
+
+    UnderlightFeedback getFeedback() {
+        return feedback;
+    }
+
+    ShapeStatistics getStatistics() {
+        return statistics;
+    }
+
+    long getMotorCalls() {
+        return motorCalls.get();
+    }
+
+    void setShapeLog(ShapeLogWriter shapeLog) {
+        this.shapeLog = shapeLog;
+    }
+
+    void setJournal(JobJournal journal) {
+        this.journal = journal;
+    }
+
+    // Method to send one motor command, unless it was already carried out before an unfinished job
+    // was resumed. Inside a job, each command is journalled once it has finished, both the commands
+    // of a shape and those on the way to the next shape (turns, moves and back-offs)
+    // Returns true if the command was sent without an error
+    private boolean send(int leftSpeed, int rightSpeed, int timeMs, String action) {
+        boolean travel = shapeCommand < 0;
+        int shape = travel ? jobShape + 1 : jobShape;
+        int command = travel ? travelCommand++ : shapeCommand;
+        if (isAlreadyDone(travel, shape, command)) {
+            return false;
+        }
+        motorCalls.incrementAndGet();
+        try {
+            motion.move(leftSpeed, rightSpeed, timeMs);
+        } catch (Exception e) {
+            System.out.println("Error " + action + ": " + e.getMessage());
+            return false;
+        }
+        if (inJob) {
+            writeJournal(() -> {
+                if (travel) {
+                    journal.travelDone(shape, command);
+                } else {
+                    journal.commandDone(shape, command);
+                }
+            });
+        }
+        return true;
+    }
+
+    // Method to check whether the robot is still catching up with an unfinished job: commands it
+    // had already finished, on the way to a shape or while drawing it, are skipped, as the robot
+    // has stayed where it stopped. A command cut short is driven again in full
+    private boolean isAlreadyDone(boolean travel, int shape, int command) {
+        if (resume == null) {
+            return false;
+        }
+        boolean done;
+        if (travel) { // Moving to the next shape
+            done = shape < resume.shape
+                    || (shape == resume.shape && (resume.started || command < resume.travel));
+        } else {
+            done = shape == resume.shape && command < resume.command;
+        }
+        if (!done) {
+            resume = null; // Caught up, draw normally from here on
+            System.out.println("Carrying on from where the robot stopped.");
+        }
+        return done;
+    }
+
+    // Method to move the SwiftBot forward
+    void moveForward(int timeMs) {
+        send(SwiftBotShapeDrawer.LEFT_MOTOR_SPEED, SwiftBotShapeDrawer.RIGHT_MOTOR_SPEED, timeMs, "moving forward"); // Move forward
+    }
+
+    // Method to turn the SwiftBot left
+    void turnLeft(int timeMs) {
+        send(-50, 50, timeMs, "turning left"); // Turn left
+    }
+
+    // Method to turn the SwiftBot right
+    void turnRight(int timeMs) {
+        send(50, -50, timeMs, "turning right"); // Turn right
+    }
+
+    // Method to turn the SwiftBot on the spot by an angle (positive is left)
+    void turnByDegrees(double degrees) {
+        int timeMs = SwiftBotShapeDrawer.getCalibration().turnTime(degrees);
+        if (timeMs == 0) {
+            return;
+        } else if (degrees > 0) {
+            turnLeft(timeMs);
+        } else {
+            turnRight(timeMs);
+        }
+    }
+
+    // Method to move the SwiftBot forward by a distance actually driven (not scaled by TRAVEL_SCALE_FACTOR)
+    void moveForwardCm(double distanceCm) {
+        int timeMs = SwiftBotShapeDrawer.getCalibration().moveTime(distanceCm);
+        if (timeMs > 0) {
+            moveForward(timeMs);
+        }
+    }
+
+    // Method to move the SwiftBot backwards
+    void moveBackwards(int distanceCm) {
+        int moveTime = SwiftBotShapeDrawer.getCalibration().moveTime(distanceCm * SwiftBotShapeDrawer.TRAVEL_SCALE_FACTOR);
+        if (send(-SwiftBotShapeDrawer.LEFT_MOTOR_SPEED, -SwiftBotShapeDrawer.RIGHT_MOTOR_SPEED, moveTime, "moving backwards")) { // Move backwards
+            System.out.println("Moved " + distanceCm + " cm backwards to start next shape.");
+        }
+    }
+
+    // Method to replay a trajectory planned by TrajectoryPlanner, reporting progress as it goes
+    void executeTrajectory(int[] trajectory) {
+        for (int i = 0; i < trajectory.length; i += TrajectoryPlanner.STRIDE) {
+            shapeCommand = i / TrajectoryPlanner.STRIDE;
+            send(trajectory[i + TrajectoryPlanner.LEFT], trajectory[i + TrajectoryPlanner.RIGHT],
+                    trajectory[i + TrajectoryPlanner.TIME], "driving");
+            int progress = trajectory[i + TrajectoryPlanner.PROGRESS];
+            if (progress > 0) {
+                System.out.println(progress + "% Complete..."); // Display progress
+            }
+        }
+    }
+
+    // Method to show the drawing-in-progress colour on the underlights
+    void showDrawingProgress() {
+        feedback.showProgress();
+    }
+
+    // Method to blink SwiftBot underlights (in the background, so the next shape can start straight away)
+    void blinkUnderlights() {
+        System.out.println("Blinking underlights in green...");
+        feedback.signalComplete();
+    }
+
+    // Method to log square details
+    void logSquare(String type, int side, double timeMs) {
+        double area = side * side; // Calculate area of square
+        logRecord(type, new int[] {side}, timeMs, area);
+    }
+
+    // Method to log triangle details
+    void logTriangle(String type, int a, int b, int c, double timeMs) {
+        double s = (a + b + c) / 2.0; // Calculate semi-perimeter
+        double area = Math.sqrt(s * (s - a) * (s - b) * (s - c)); // Calculate area using Heron's formula
+        logRecord(type, new int[] {a, b, c}, timeMs, area);
+    }
+
+    // Method to log circle details
+    void logCircle(String type, int diameter, double timeMs) {
+        double radius = diameter / 2.0; // Calculate radius
+        double area = Math.PI * radius * radius; // Calculate area of circle
+        logRecord(type, new int[] {diameter}, timeMs, area);
+    }
+
+    // Method to update the statistics and append a finished shape to the binary log
+    private void logRecord(String type, int[] dimensions, double timeMs, double area) {
+        lastRecord = new ShapeLogRecord(System.currentTimeMillis(), ShapeLogRecord.codeFor(type), dimensions, timeMs, area);
+        statistics.record(type, timeMs / 1000.0, area);
+        if (shapeLog == null) {
+            return;
+        }
+        try {
+            shapeLog.append(lastRecord);
+        } catch (IOException e) {
+            System.out.println("Error writing drawing log: " + e.getMessage());
+        }
+    }
+
+    // Method to display the shape just drawn and the running totals
+    // (the full history is only written out by saveLogToFile)
+    void saveLog() {
+        SwiftBotShapeDrawer.displayHeader("Drawing Log Summary");
+
+        PrintWriter console = new PrintWriter(System.out);
+        if (lastRecord != null) {
+            console.println(" - " + lastRecord.describe() + " [shape " + statistics.getShapeCount() + "]");
+        }
+        statistics.writeTotals(console);
+        statistics.writeTypeBreakdown(console);
+        console.flush();
+    }
+
+    // Method to draw one shape, recording its path preview and closure error if previews are on,
+    // and its start and completion in the job journal
+    void draw(SwiftBotShapeDrawer.Shape shape) {
+        if (inJob) {
+            jobShape++;
+            travelCommand = 0; // Commands after this shape are on the way to the next one
+            int number = jobShape;
+            if (resume != null && number < resume.shape) {
+                System.out.println("\nSkipping " + shape.type + ", it was drawn before the robot stopped.");
+                return;
+            }
+            if (resume == null || number != resume.shape || !resume.started) { // Already journalled when resuming
+                writeJournal(() -> journal.shapeStarted(number));
+            }
+        }
+        try {
+            if (recorder == null) {
+                shape.draw(this);
+            } else {
+                recorder.beginShape();
+                try {
+                    shape.draw(this);
+                } finally {
+                    recorder.endShape(shape.type);
+                }
+            }
+        } finally {
+            shapeCommand = -1;
+        }
+        if (inJob) {
+            int number = jobShape;
+            writeJournal(() -> journal.shapeDone(number));
+        }
+    }
+
+    // Method to mark the start of a job (one scanned program) for the path previews and journal
+    void beginJob(String payload) {
+        beginJob(payload, null);
+    }
+
+    // Method to start a job, carrying on from where an unfinished one stopped if resume isn't null
+    // (the job must be planned the same way as before, so its shapes are drawn in the same order)
+    void beginJob(String payload, JobJournal.Unfinished resume) {
+        inJob = true;
+        jobShape = -1;
+        shapeCommand = -1;
+        travelCommand = 0;
+        this.resume = resume;
+        if (resume != null) {
+            writeJournal(() -> journal.jobResumed(resume));
+        } else {
+            writeJournal(() -> journal.jobStarted(payload));
+        }
+        if (recorder != null) {
+            recorder.beginJob();
+        }
+    }
+
+    // Method to mark the end of a job, writing its path preview and emptying the journal
+    void endJob() {
+        if (recorder != null) {
+            recorder.endJob();
+        }
+        writeJournal(() -> journal.jobDone());
+        inJob = false;
+        resume = null;
+    }
+
+    // A write to the job journal
+    private interface JournalWrite {
+        void write() throws IOException;
+    }
+
+    // Method to write to the job journal, if there is one (the job carries on if the write fails,
+    // it just can't be resumed from that point)
+    private void writeJournal(JournalWrite write) {
+        if (journal == null) {
+            return;
+        }
+        try {
+            write.write();
+        } catch (IOException e) {
+            System.out.println("Error writing job journal: " + e.getMessage());
+        }
+    }
+
+    // Method to draw shapes one after another, backing off 15 cm between them
+    void drawAll(List<SwiftBotShapeDrawer.Shape> shapes) {
+        for (int i = 0; i < shapes.size(); i++) {
+            draw(shapes.get(i));
+            if (i < shapes.size() - 1) {
+                moveBackwards(15); // Move backwards to start the next shape
+            }
+        }
+    }
+
+    // Method to turn the underlights off, stop the feedback thread and finish the path previews
+    void close() {
+        feedback.close();
+        if (recorder != null) {
+            recorder.close();
+            PrintWriter console = new PrintWriter(System.out);
+            recorder.writeSummary(console, "");
+            console.flush();
+        }
+    }
+}
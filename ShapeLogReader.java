@@ -0,0 +1,87 @@
+package Swiftbot;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.*;
+import java.util.*;
+import java.util.function.Consumer;
+
+// Reads the binary drawing log back, one record at a time, and rebuilds the text summary from it.
+// A partly written record at the end of a segment (e.g. after a crash) is ignored.
+//
+// Usage: java Swiftbot.ShapeLogReader <log folder> <session>
+public class ShapeLogReader {
+    private final Path directory; // Folder holding the segments
+    private final String session; // Session whose segments are read
+
+    ShapeLogReader(Path directory, String session) {
+        this.directory = directory;
+        this.session = session;
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length < 2) {
+            System.out.println("Usage: ShapeLogReader <log folder> <session>");
+            return;
+        }
+        PrintWriter out = new PrintWriter(new OutputStreamWriter(System.out));
+        out.println("Drawing Log Summary");
+        out.println("===================");
+        new ShapeLogReader(Paths.get(args[0]), args[1]).writeSummary(out, "");
+        out.flush();
+    }
+
+    // Method to pass every record of the session, oldest first, to the consumer
+    void forEach(Consumer<ShapeLogRecord> consumer) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(ShapeLogRecord.RECORD_SIZE * 256);
+        for (Path segment : segments()) {
+            try (FileChannel channel = FileChannel.open(segment, StandardOpenOption.READ)) {
+                ByteBuffer header = ByteBuffer.allocate(ShapeLogWriter.HEADER_SIZE);
+                while (header.hasRemaining() && channel.read(header) >= 0) {
+                    // Keep reading until the header is complete or the file ends
+                }
+                header.flip();
+                if (header.remaining() < ShapeLogWriter.HEADER_SIZE || header.getInt() != ShapeLogWriter.MAGIC) {
+                    continue; // Not a drawing log segment
+                }
+
+                buffer.clear();
+                while (channel.read(buffer) >= 0) {
+                    buffer.flip();
+                    while (buffer.remaining() >= ShapeLogRecord.RECORD_SIZE) {
+                        consumer.accept(ShapeLogRecord.readFrom(buffer));
+                    }
+                    buffer.compact(); // Keep any partial record for the next read
+                }
+            }
+        }
+    }
+
+    // Method to write the entries and totals of the session (the same text the drawer has always saved)
+    void writeSummary(PrintWriter writer, String entryPrefix) throws IOException {
+        ShapeStatistics statistics = new ShapeStatistics();
+        forEach(record -> {
+            writer.println(entryPrefix + record.describe()); // Write each log entry
+            if (!record.typeName().equals("Unknown")) {
+                statistics.record(record.typeName(), record.timeMs / 1000.0, record.area);
+            }
+        });
+        statistics.writeTotals(writer);
+    }
+
+    // Method to list the session's segment files in order
+    private List<Path> segments() throws IOException {
+        List<Path> files = new ArrayList<>();
+        if (!Files.isDirectory(directory)) {
+            return files;
+        }
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory, session + "-*.bin")) {
+            for (Path file : stream) {
+                files.add(file);
+            }
+        }
+        Collections.sort(files); // Sequence numbers are zero-padded, so name order is write order
+        return files;
+    }
+}
@@ -0,0 +1,104 @@
+package Swiftbot;
+
+import java.nio.ByteBuffer;
+
+// One finished shape as stored in the binary drawing log.
+// Every record has the same size so the log can be read and skipped without parsing text.
+//
+// Layout (big-endian, RECORD_SIZE bytes):
+//   0  long   timestamp (ms since epoch)
+//   8  byte   shape type code
+//   9  byte   unused
+//   10 short  unused
+//   12 int[3] dimensions (square: side, triangle: a b c, circle: diameter)
+//   24 double drawing time in ms
+//   32 double area in cm^2
+class ShapeLogRecord {
+    static final int RECORD_SIZE = 40; // Size of one record in bytes
+
+    // Shape type codes
+    static final byte SQUARE = 1;
+    static final byte TRIANGLE = 2;
+    static final byte CIRCLE = 3;
+
+    final long timestamp; // When the shape was finished
+    final byte shapeType; // One of the type codes above
+    final int[] dimensions; // Side lengths or diameter in cm
+    final double timeMs; // Time taken to draw the shape
+    final double area; // Area of the shape
+
+    ShapeLogRecord(long timestamp, byte shapeType, int[] dimensions, double timeMs, double area) {
+        this.timestamp = timestamp;
+        this.shapeType = shapeType;
+        this.dimensions = dimensions;
+        this.timeMs = timeMs;
+        this.area = area;
+    }
+
+    // Method to write the record at the buffer's position
+    void writeTo(ByteBuffer buffer) {
+        buffer.putLong(timestamp);
+        buffer.put(shapeType);
+        buffer.put((byte) 0);
+        buffer.putShort((short) 0);
+        for (int i = 0; i < 3; i++) {
+            buffer.putInt(i < dimensions.length ? dimensions[i] : 0);
+        }
+        buffer.putDouble(timeMs);
+        buffer.putDouble(area);
+    }
+
+    // Method to read a record from the buffer's position
+    static ShapeLogRecord readFrom(ByteBuffer buffer) {
+        long timestamp = buffer.getLong();
+        byte shapeType = buffer.get();
+        buffer.get();
+        buffer.getShort();
+        int d1 = buffer.getInt(), d2 = buffer.getInt(), d3 = buffer.getInt();
+        double timeMs = buffer.getDouble();
+        double area = buffer.getDouble();
+        int[] dimensions = shapeType == TRIANGLE ? new int[] {d1, d2, d3} : new int[] {d1};
+        return new ShapeLogRecord(timestamp, shapeType, dimensions, timeMs, area);
+    }
+
+    // Method to get the type code for a shape name
+    static byte codeFor(String type) {
+        switch (type) {
+            case "Square":
+                return SQUARE;
+            case "Triangle":
+                return TRIANGLE;
+            case "Circle":
+                return CIRCLE;
+            default:
+                throw new IllegalArgumentException("Unknown shape type: " + type);
+        }
+    }
+
+    // Method to get the shape name for this record
+    String typeName() {
+        switch (shapeType) {
+            case SQUARE:
+                return "Square";
+            case TRIANGLE:
+                return "Triangle";
+            case CIRCLE:
+                return "Circle";
+            default:
+                return "Unknown";
+        }
+    }
+
+    // Method to describe the record the same way the text log does
+    String describe() {
+        double timeSeconds = timeMs / 1000.0; // Convert time to seconds
+        switch (shapeType) {
+            case TRIANGLE:
+                return typeName() + ": " + dimensions[0] + ", " + dimensions[1] + ", " + dimensions[2] + " cm (Time: " + timeSeconds + " seconds)";
+            case CIRCLE:
+                return typeName() + ": " + dimensions[0] + " cm diameter (Time: " + timeSeconds + " seconds)";
+            default:
+                return typeName() + ": " + dimensions[0] + " cm (Time: " + timeSeconds + " seconds)";
+        }
+    }
+}
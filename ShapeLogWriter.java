@@ -0,0 +1,123 @@
+package Swiftbot;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.*;
+
+// Append-only writer for the binary drawing log.
+// Records are collected in a small buffer and written out when it fills up or on flush(). The
+// segment is fsynced every few records or seconds, and a new segment file is started once the
+// current one reaches its size limit. Memory use does not depend on how many shapes are logged.
+//
+// Segment files are named <session>-<sequence>.bin and start with a short header.
+class ShapeLogWriter implements Closeable {
+    static final int MAGIC = 0x53424C47; // "SBLG"
+    static final int VERSION = 1;
+    static final int HEADER_SIZE = 8; // Magic + version
+
+    private final Path directory; // Folder holding the segments
+    private final String session; // Prefix shared by all segments of this session
+    private final long maxSegmentBytes; // Size at which a new segment is started
+    private final int syncEveryRecords; // Records between fsyncs
+    private final long syncIntervalMs; // Longest time between fsyncs while records are being written
+
+    private final ByteBuffer buffer; // Records not yet written to the segment
+    private FileChannel segment; // Segment currently being written
+    private int segmentNumber = 0; // Sequence number of the current segment
+    private long segmentBytes; // Bytes written to the current segment
+    private int recordsSinceSync = 0;
+    private long lastSync = System.currentTimeMillis();
+
+    ShapeLogWriter(Path directory, String session, long maxSegmentBytes, int syncEveryRecords, long syncIntervalMs) throws IOException {
+        if (maxSegmentBytes < HEADER_SIZE + ShapeLogRecord.RECORD_SIZE) {
+            throw new IllegalArgumentException("Segment size too small: " + maxSegmentBytes);
+        }
+        this.directory = directory;
+        this.session = session;
+        this.maxSegmentBytes = maxSegmentBytes;
+        this.syncEveryRecords = Math.max(1, syncEveryRecords);
+        this.syncIntervalMs = syncIntervalMs;
+        this.buffer = ByteBuffer.allocateDirect(ShapeLogRecord.RECORD_SIZE * this.syncEveryRecords);
+        Files.createDirectories(directory);
+        openSegment();
+    }
+
+    // Method to add one record to the log
+    synchronized void append(ShapeLogRecord record) throws IOException {
+        if (segmentBytes + buffer.position() + ShapeLogRecord.RECORD_SIZE > maxSegmentBytes) {
+            rotate();
+        }
+        if (buffer.remaining() < ShapeLogRecord.RECORD_SIZE) {
+            writeBuffer();
+        }
+        record.writeTo(buffer);
+        recordsSinceSync++;
+
+        if (recordsSinceSync >= syncEveryRecords || System.currentTimeMillis() - lastSync >= syncIntervalMs) {
+            sync();
+        }
+    }
+
+    // Method to write any buffered records to the segment so readers can see them
+    synchronized void flush() throws IOException {
+        writeBuffer();
+    }
+
+    // Method to write buffered records and force them to disk
+    synchronized void sync() throws IOException {
+        writeBuffer();
+        segment.force(false);
+        recordsSinceSync = 0;
+        lastSync = System.currentTimeMillis();
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        if (segment != null) {
+            sync();
+            segment.close();
+            segment = null;
+        }
+    }
+
+    // Method to finish the current segment and start the next one
+    private void rotate() throws IOException {
+        sync();
+        segment.close();
+        segmentNumber++;
+        openSegment();
+    }
+
+    private void openSegment() throws IOException {
+        Path file = directory.resolve(segmentName(session, segmentNumber));
+        segment = FileChannel.open(file, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE);
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+        header.putInt(MAGIC).putInt(VERSION).flip();
+        while (header.hasRemaining()) {
+            segment.write(header);
+        }
+        segmentBytes = HEADER_SIZE;
+    }
+
+    private void writeBuffer() throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            segmentBytes += segment.write(buffer);
+        }
+        buffer.clear();
+    }
+
+    // Method to get the file name of a segment
+    static String segmentName(String session, int number) {
+        return String.format("%s-%06d.bin", session, number);
+    }
+
+    Path getDirectory() {
+        return directory;
+    }
+
+    String getSession() {
+        return session;
+    }
+}
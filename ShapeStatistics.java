@@ -0,0 +1,138 @@
+package Swiftbot;
+
+import java.io.PrintWriter;
+
+// Running drawing statistics, updated in constant time and memory for every shape.
+// Tracks counts, mean, min, max and p50/p95/p99 drawing time for all shapes and per shape type,
+// plus the largest shape drawn.
+class ShapeStatistics {
+    private static final String[] TYPES = {"Square", "Triangle", "Circle"};
+
+    private final TimeStats all = new TimeStats(); // Statistics for every shape
+    private final TimeStats[] byType = new TimeStats[TYPES.length]; // Statistics per shape type
+    private double largestArea = 0; // Area of the largest shape
+    private String largestShape = ""; // Type of the largest shape
+
+    ShapeStatistics() {
+        for (int i = 0; i < byType.length; i++) {
+            byType[i] = new TimeStats();
+        }
+    }
+
+    // Method to add one finished shape
+    synchronized void record(String type, double timeSeconds, double area) {
+        all.add(timeSeconds);
+        byType[indexOf(type)].add(timeSeconds);
+        if (area > largestArea) {
+            largestArea = area; // Update largest area
+            largestShape = type; // Update largest shape type
+        }
+    }
+
+    // Method to add everything recorded by another set of statistics
+    synchronized void merge(ShapeStatistics other) {
+        synchronized (other) {
+            all.merge(other.all);
+            for (int i = 0; i < byType.length; i++) {
+                byType[i].merge(other.byType[i]);
+            }
+            if (other.largestArea > largestArea) {
+                largestArea = other.largestArea;
+                largestShape = other.largestShape;
+            }
+        }
+    }
+
+    // Method to write the totals shown at the end of the drawing log
+    synchronized void writeTotals(PrintWriter writer) {
+        if (all.count == 0) {
+            writer.println("No shapes drawn yet.");
+            return;
+        }
+        int squareCount = getCount("Square"), triangleCount = getCount("Triangle"), circleCount = getCount("Circle");
+        writer.println("\n- Largest Shape: " + largestShape + " (Area: " + largestArea + " cm^2)");
+        String frequentShape = (squareCount >= triangleCount && squareCount >= circleCount) ? "Square" :
+                (triangleCount >= circleCount) ? "Triangle" : "Circle"; // Determine most frequent shape
+        int count = Math.max(squareCount, Math.max(triangleCount, circleCount)); // Get count of most frequent shape
+        writer.println("- Most Frequently Drawn Shape: " + frequentShape + " (" + count + " times)");
+        writer.printf("- Average Drawing Time: %.2f seconds\n", all.mean);
+        writer.printf("- Drawing Time p50/p95/p99: %.2f / %.2f / %.2f seconds\n",
+                all.sketch.quantile(0.50), all.sketch.quantile(0.95), all.sketch.quantile(0.99));
+    }
+
+    // Method to write one line of statistics for each shape type drawn
+    synchronized void writeTypeBreakdown(PrintWriter writer) {
+        for (int i = 0; i < TYPES.length; i++) {
+            TimeStats stats = byType[i];
+            if (stats.count > 0) {
+                writer.printf("- %s: %d drawn, mean %.2f s, min %.2f s, max %.2f s, p95 %.2f s\n",
+                        TYPES[i], stats.count, stats.mean, stats.min, stats.max, stats.sketch.quantile(0.95));
+            }
+        }
+    }
+
+    synchronized int getShapeCount() {
+        return (int) all.count;
+    }
+
+    synchronized int getCount(String type) {
+        return (int) byType[indexOf(type)].count;
+    }
+
+    synchronized double getMeanSeconds() {
+        return all.mean;
+    }
+
+    synchronized double getTotalSeconds() {
+        return all.mean * all.count;
+    }
+
+    synchronized double getPercentileSeconds(double q) {
+        return all.sketch.quantile(q);
+    }
+
+    synchronized double getLargestArea() {
+        return largestArea;
+    }
+
+    synchronized String getLargestShape() {
+        return largestShape;
+    }
+
+    private static int indexOf(String type) {
+        for (int i = 0; i < TYPES.length; i++) {
+            if (TYPES[i].equals(type)) {
+                return i;
+            }
+        }
+        throw new IllegalArgumentException("Unknown shape type: " + type);
+    }
+
+    // Count, running mean, min, max and percentile sketch for a set of drawing times
+    private static class TimeStats {
+        long count = 0;
+        double mean = 0;
+        double min = 0;
+        double max = 0;
+        final QuantileSketch sketch = new QuantileSketch(0.01, 3600, 0.01); // 10 ms to 1 hour, within 1%
+
+        void add(double seconds) {
+            count++;
+            mean += (seconds - mean) / count; // Running mean, no total to overflow or lose precision
+            min = count == 1 ? seconds : Math.min(min, seconds);
+            max = count == 1 ? seconds : Math.max(max, seconds);
+            sketch.add(seconds);
+        }
+
+        void merge(TimeStats other) {
+            if (other.count == 0) {
+                return;
+            }
+            min = count == 0 ? other.min : Math.min(min, other.min);
+            max = count == 0 ? other.max : Math.max(max, other.max);
+            mean = (mean * count + other.mean * other.count) / (count + other.count);
+            count += other.count;
+            sketch.merge(other.sketch);
+        }
+    }
+}
@@ -0,0 +1,127 @@
+package Swiftbot;
+
+// Motion backend that runs entirely in-process. Every move is integrated into a pose using a
+// kinematic model of the robot (by default the same calibration the drawer plans with), and
+// waits are divided by a time-compression factor (use Double.POSITIVE_INFINITY to skip waiting
+// altogether). It also simulates the ultrasound sensor facing a wall across the +x direction.
+class SimulatedMotionBackend implements MotionBackend, RangeSensor {
+    private static final double MAX_RANGE_CM = 400; // Reading when the wall is out of view
+    private final DifferentialDriveModel model; // Kinematics used to integrate the pose
+    private final double timeCompression; // How many times faster than real time the simulation runs
+    private double startupLagMs = 0; // Time at the start of each move before the wheels get going
+    private double wallX = 50; // Position of the wall seen by the range sensor, in cm
+
+    private Pose pose = new Pose(); // Current pose of the simulated robot
+    private long moveCalls = 0; // Number of move commands received
+    private double simulatedTimeMs = 0; // Robot time spent on moves and pauses
+    private double travelCm = 0; // Distance covered by the robot centre
+    private int[] underlights = null; // Current underlight colour, null when off
+
+    SimulatedMotionBackend(double timeCompression) {
+        this(CalibrationProfile.defaults().driveModel(), timeCompression);
+    }
+
+    SimulatedMotionBackend(DifferentialDriveModel model, double timeCompression) {
+        if (!(timeCompression > 0)) {
+            throw new IllegalArgumentException("Time compression must be positive: " + timeCompression);
+        }
+        this.model = model;
+        this.timeCompression = timeCompression;
+    }
+
+    @Override
+    public void move(int leftSpeed, int rightSpeed, int timeMs) throws InterruptedException {
+        if (leftSpeed < -100 || leftSpeed > 100 || rightSpeed < -100 || rightSpeed > 100 || timeMs < 0) {
+            throw new IllegalArgumentException("Invalid move: " + leftSpeed + ", " + rightSpeed + ", " + timeMs);
+        }
+        synchronized (this) {
+            double movingMs = Math.max(0, timeMs - startupLagMs);
+            model.advance(pose, leftSpeed, rightSpeed, movingMs);
+            travelCm += Math.abs(model.wheelSpeed(leftSpeed) + model.wheelSpeed(rightSpeed)) / 2 * movingMs;
+            moveCalls++;
+            simulatedTimeMs += timeMs;
+        }
+        sleepCompressed(timeMs); // Outside the lock, so the underlights can change while the robot moves
+    }
+
+    @Override
+    public synchronized void fillUnderlights(int[] rgb) {
+        underlights = rgb.clone();
+    }
+
+    @Override
+    public synchronized void disableUnderlights() {
+        underlights = null;
+    }
+
+    @Override
+    public void pause(long timeMs) throws InterruptedException {
+        synchronized (this) {
+            simulatedTimeMs += timeMs;
+        }
+        sleepCompressed(timeMs);
+    }
+
+    @Override
+    public synchronized double distanceCm() {
+        double facing = Math.cos(pose.heading);
+        if (facing < 0.1) {
+            return MAX_RANGE_CM; // Facing away from the wall
+        }
+        return Math.min(MAX_RANGE_CM, (wallX - pose.x) / facing);
+    }
+
+    // Method to make each move lose some time before the wheels get going, like a real robot
+    synchronized void setStartupLagMs(double startupLagMs) {
+        this.startupLagMs = startupLagMs;
+    }
+
+    // Method to place the range sensor's wall at a distance in front of the starting position
+    synchronized void setWallX(double wallX) {
+        this.wallX = wallX;
+    }
+
+    // Method to wait for the compressed equivalent of a real-time duration
+    private void sleepCompressed(double timeMs) throws InterruptedException {
+        if (Double.isInfinite(timeCompression)) {
+            return;
+        }
+        long nanos = (long) (timeMs * 1_000_000 / timeCompression);
+        if (nanos > 0) {
+            Thread.sleep(nanos / 1_000_000, (int) (nanos % 1_000_000));
+        }
+    }
+
+    // Method to put the robot back at the origin and clear the counters
+    synchronized void reset() {
+        pose = new Pose();
+        moveCalls = 0;
+        simulatedTimeMs = 0;
+        travelCm = 0;
+        underlights = null;
+    }
+
+    synchronized Pose getPose() {
+        return pose.copy();
+    }
+
+    synchronized long getMoveCalls() {
+        return moveCalls;
+    }
+
+    synchronized double getSimulatedTimeMs() {
+        return simulatedTimeMs;
+    }
+
+    synchronized double getTravelCm() {
+        return travelCm;
+    }
+
+    synchronized int[] getUnderlights() {
+        return underlights == null ? null : underlights.clone();
+    }
+
+    DifferentialDriveModel getModel() {
+        return model;
+    }
+}
@@ -0,0 +1,32 @@
+package Swiftbot;
+
+import swiftbot.SwiftBotAPI;
+
+// Motion backend that sends every command to a real SwiftBot
+class SwiftBotMotionBackend implements MotionBackend {
+    private final SwiftBotAPI swiftBot; // SwiftBot API instance
+
+    SwiftBotMotionBackend(SwiftBotAPI swiftBot) {
+        this.swiftBot = swiftBot;
+    }
+
+    @Override
+    public void move(int leftSpeed, int rightSpeed, int timeMs) throws InterruptedException {
+        swiftBot.move(leftSpeed, rightSpeed, timeMs); // Blocks until the move is finished
+    }
+
+    @Override
+    public void fillUnderlights(int[] rgb) {
+        swiftBot.fillUnderlights(rgb);
+    }
+
+    @Override
+    public void disableUnderlights() {
+        swiftBot.disableUnderlights();
+    }
+
+    @Override
+    public void pause(long timeMs) throws InterruptedException {
+        Thread.sleep(timeMs);
+    }
+}
@@ -2,6 +2,9 @@ package Swiftbot;
 
 import java.util.*;
 import java.io.*;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.atomic.AtomicReference;
 import swiftbot.SwiftBotAPI;
 import java.awt.image.BufferedImage;
 
@@ -11,37 +14,78 @@ public class SwiftBotShapeDrawer {
     private static final int MIN_SIDE_LENGTH = 15; // Minimum allowed side length in cm
     private static final int MAX_SIDE_LENGTH = 85; // Maximum allowed side length in cm
 
-    // Variables to track total drawing time, shape count, and log shapes
-    private static double totalTime = 0; // Total time taken to draw all shapes
-    private static int shapeCount = 0; // Total number of shapes drawn
-    private static List<String> shapeLog = new ArrayList<>(); // Log of all shapes drawn
+    // Binary log of every shape drawn this session (null when logging is off)
+    private static ShapeLogWriter shapeLogWriter;
 
-    // Counters for each type of shape
-    private static int squareCount = 0, triangleCount = 0, circleCount = 0;
+    // Drawing log settings
+    private static final String SHAPE_LOG_FOLDER = "shape-log"; // Folder for the binary log segments
+    private static final long SHAPE_LOG_SEGMENT_BYTES = 1024 * 1024; // Start a new segment after 1 MB
+    private static final int SHAPE_LOG_SYNC_RECORDS = 8; // Force the log to disk every 8 shapes...
+    private static final long SHAPE_LOG_SYNC_MS = 5000; // ...or every 5 seconds while shapes are being drawn
 
-    // Variables to track the largest shape drawn
-    private static double largestArea = 0; // Area of the largest shape
-    private static String largestShape = ""; // Type of the largest shape
-
-    // SwiftBot API instance
+    // SwiftBot API instance (only created when running on the robot)
     private static SwiftBotAPI swiftBot;
 
-    // Calibration constants for SwiftBot movement
-    private static final int MOVE_TIME_PER_CM = 100; // Time (ms) to move 1 cm (calibrated experimentally)
-    private static final int TURN_TIME_90_DEGREES = 643; // Time (ms) to turn 90 degrees (calibrated experimentally)
-    private static final int TURN_TIME_120_DEGREES = 666; // Time (ms) to turn 120 degrees (calibrated experimentally)
+    // The robot that draws every shape: its movement (the real SwiftBot or a simulation), underlight
+    // feedback and drawing statistics
+    private static ShapeDrawerWorker drawer;
+
+    // Default calibration for SwiftBot movement, used until the robot has its own profile
+    static final int MOVE_TIME_PER_CM = 100; // Time (ms) to move 1 cm (calibrated experimentally)
+    static final int TURN_TIME_90_DEGREES = 643; // Time (ms) to turn 90 degrees (calibrated experimentally)
+
+    // Calibration profile of this robot (loaded from swiftbot-calibration.properties at startup)
+    private static CalibrationProfile calibration = CalibrationProfile.defaults();
+
+    // Trajectories of recently drawn shapes (size can be set with -Dswiftbot.trajectoryCacheSize=N)
+    private static final TrajectoryCache trajectoryCache = new TrajectoryCache(
+            Integer.getInteger("swiftbot.trajectoryCacheSize", 32));
 
     // Motor speed adjustments to ensure the SwiftBot moves straight
-    private static final int LEFT_MOTOR_SPEED = 50; // Speed for the left motor
-    private static final int RIGHT_MOTOR_SPEED = 50; // Speed for the right motor
+    static final int LEFT_MOTOR_SPEED = 50; // Speed for the left motor
+    static final int RIGHT_MOTOR_SPEED = 50; // Speed for the right motor
 
     // Scale factor to reduce travel distance to minimize drift
-    private static final double TRAVEL_SCALE_FACTOR = 0.6; // Reduce travel distance by 40%
+    static final double TRAVEL_SCALE_FACTOR = 0.6; // Reduce travel distance by 40%
+
+    // Ways of driving a circle
+    enum CircleMode {
+        ARC, // A few differential-speed commands that follow the arc directly
+        POLYLINE // 360 short forward moves, each followed by a small turn
+    }
+
+    // Circle drawing mode (can be set with -Dswiftbot.circleMode=POLYLINE)
+    static CircleMode circleMode = CircleMode.valueOf(System.getProperty("swiftbot.circleMode", "ARC").toUpperCase());
+
+    // Timers for every stage of a job (written to the file set with -Dswiftbot.metricsFile, as
+    // Prometheus text if it ends in .prom and JSON otherwise, every -Dswiftbot.metricsIntervalMs)
+    private static final Metrics metrics = new Metrics();
+    private static final String METRICS_FILE = System.getProperty("swiftbot.metricsFile", "");
+    private static final long METRICS_INTERVAL_MS = Long.getLong("swiftbot.metricsIntervalMs", 10000);
 
-    // Static block to initialize the SwiftBot API
-    static {
+    // Folder for SVG/PNG previews of the path driven, dead-reckoned from the motor commands, each
+    // run in its own timestamped subfolder (off unless set with -Dswiftbot.previewFolder=<folder>)
+    private static final String PREVIEW_FOLDER = System.getProperty("swiftbot.previewFolder", "");
+
+    // Distance (cm) between the start and end of a shape that is reported as not closing
+    // (can be set with -Dswiftbot.closureWarningCm=N)
+    static final double CLOSURE_WARNING_CM = Double.parseDouble(System.getProperty("swiftbot.closureWarningCm", "2"));
+
+    // Drive rates of the robot measured independently of its calibration (a properties file in the
+    // calibration format, set with -Dswiftbot.referenceProfile=<file>). Previews are dead-reckoned
+    // with it, so a calibration that doesn't match the real robot shows up as closure error
+    private static final String REFERENCE_PROFILE = System.getProperty("swiftbot.referenceProfile", "");
+
+    // Write-ahead journal of the job being drawn, so a job cut short can be finished after a restart
+    // (file can be set with -Dswiftbot.journalFile=<file>, or turned off with an empty name)
+    private static final String JOURNAL_FILE = System.getProperty("swiftbot.journalFile", "swiftbot-job.journal");
+    private static JobJournal journal;
+
+    // Method to initialize the SwiftBot API and use it for all movement
+    private static void initSwiftBot() {
         try {
             swiftBot = new SwiftBotAPI(); // Initialize SwiftBot API
+            setMotionBackend(new SwiftBotMotionBackend(swiftBot)); // Send all movement to the robot
             System.out.println("SwiftBot API initialized successfully.");
         } catch (Exception e) {
             System.out.println("SwiftBot API failed to initialize. Ensure I2C is enabled.");
@@ -50,97 +94,358 @@ public class SwiftBotShapeDrawer {
         }
     }
 
+    // Method to load this robot's calibration profile, if it has been calibrated
+    private static void loadCalibration() {
+        try {
+            calibration = CalibrationProfile.load(new File(CalibrationProfile.DEFAULT_FILE).toPath());
+            System.out.println("Calibration: " + calibration);
+        } catch (IOException | RuntimeException e) {
+            System.out.println("Error loading calibration, using defaults: " + e.getMessage());
+        }
+    }
+
+    // Method to run the calibration test pattern and save the new profile
+    private static void runCalibration() {
+        displayHeader("SwiftBot Calibration");
+        System.out.println("Place the SwiftBot about 50 cm from a flat wall, facing it.");
+        try {
+            CalibrationProfile measured = new CalibrationEngine(drawer.getMotion(), swiftBot::useUltrasound, calibration).run();
+            measured.save(new File(CalibrationProfile.DEFAULT_FILE).toPath());
+            setCalibration(measured);
+            System.out.println("\nNew calibration: " + measured);
+            System.out.println("Saved to: " + new File(CalibrationProfile.DEFAULT_FILE).getAbsolutePath());
+        } catch (IOException e) {
+            System.out.println("Error saving calibration: " + e.getMessage());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            System.out.println("Calibration interrupted.");
+        }
+    }
+
+    // Method to load the reference profile for the path previews, or return null if none was given
+    static CalibrationProfile loadReferenceProfile() {
+        if (REFERENCE_PROFILE.isEmpty()) {
+            return null;
+        }
+        File file = new File(REFERENCE_PROFILE);
+        try {
+            if (!file.exists()) {
+                throw new FileNotFoundException(file.getPath());
+            }
+            return CalibrationProfile.load(file.toPath());
+        } catch (IOException | RuntimeException e) {
+            System.out.println("Error loading reference profile, previews only check the planning: " + e.getMessage());
+            return null;
+        }
+    }
+
+    static CalibrationProfile getCalibration() {
+        return calibration;
+    }
+
+    static void setCalibration(CalibrationProfile profile) {
+        calibration = profile;
+        trajectoryCache.invalidate(); // Every cached trajectory was planned with the old profile
+    }
+
+    static TrajectoryCache getTrajectoryCache() {
+        return trajectoryCache;
+    }
+
+    static Metrics getMetrics() {
+        return metrics;
+    }
+
+    // Method to replace the motion backend (e.g. with a simulated robot)
+    // The new robot starts with empty statistics
+    static void setMotionBackend(MotionBackend backend) {
+        if (drawer != null) {
+            drawer.close();
+        }
+        drawer = new ShapeDrawerWorker("swiftbot", backend, metrics,
+                PREVIEW_FOLDER.isEmpty() ? null : new File(PREVIEW_FOLDER).toPath());
+        drawer.setShapeLog(shapeLogWriter);
+        drawer.setJournal(journal);
+    }
+
+    // Method to turn the underlights off and finish the path previews when the program ends
+    static void closeDrawer() {
+        drawer.close();
+    }
+
+    // Method to start writing the timers to the metrics file, if one was given
+    private static void startMetricsDump() {
+        if (!METRICS_FILE.isEmpty()) {
+            metrics.startDump(new File(METRICS_FILE).toPath(), METRICS_INTERVAL_MS);
+        }
+    }
+
+    // Method to stop the periodic dump and write the final timings
+    static void closeMetrics() {
+        metrics.stopDump();
+        if (!METRICS_FILE.isEmpty()) {
+            try {
+                metrics.writeTo(new File(METRICS_FILE).toPath());
+                System.out.println("Metrics saved to: " + new File(METRICS_FILE).getAbsolutePath());
+            } catch (IOException e) {
+                System.out.println("Error saving metrics: " + e.getMessage());
+            }
+        }
+    }
+
+    // Method to start the binary drawing log for this session
+    private static void openShapeLog() {
+        String session = new java.text.SimpleDateFormat("yyyyMMdd-HHmmss").format(new Date());
+        try {
+            shapeLogWriter = new ShapeLogWriter(new File(SHAPE_LOG_FOLDER).toPath(), session,
+                    SHAPE_LOG_SEGMENT_BYTES, SHAPE_LOG_SYNC_RECORDS, SHAPE_LOG_SYNC_MS);
+            drawer.setShapeLog(shapeLogWriter);
+        } catch (IOException e) {
+            System.out.println("Error opening drawing log: " + e.getMessage());
+        }
+    }
+
+    // Method to open the job journal and find the job the last run didn't finish, if any
+    private static JobJournal.Unfinished openJournal() {
+        if (JOURNAL_FILE.isEmpty()) {
+            return null;
+        }
+        try {
+            journal = new JobJournal(new File(JOURNAL_FILE).toPath());
+            drawer.setJournal(journal);
+            return journal.recover();
+        } catch (IOException e) {
+            System.out.println("Error opening job journal, jobs can't be resumed: " + e.getMessage());
+            return null;
+        }
+    }
+
+    // Method to ask whether to finish the job the last run didn't finish ('A') or discard it ('B')
+    private static void offerResume(JobJournal.Unfinished unfinished) {
+        displayHeader("Unfinished Job");
+        System.out.println("The last job stopped before it was finished: " + unfinished.payload);
+        if (unfinished.started) {
+            System.out.println("Shapes finished: " + unfinished.shape + ", the next one stopped after "
+                    + unfinished.command + " motor commands.");
+        } else if (unfinished.travel > 0) {
+            System.out.println("Shapes finished: " + unfinished.shape + ", stopped on the way to the next one.");
+        } else {
+            System.out.println("Shapes finished: " + unfinished.shape + ".");
+        }
+        System.out.println("Leave the SwiftBot where it stopped and press 'A' to finish the job, or 'B' to discard it.");
+
+        BlockingQueue<Boolean> answer = new ArrayBlockingQueue<>(1);
+        swiftBot.enableButton(swiftbot.Button.A, () -> answer.offer(true));
+        swiftBot.enableButton(swiftbot.Button.B, () -> answer.offer(false));
+        boolean resume;
+        try {
+            resume = answer.take();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            resume = false;
+        }
+        swiftBot.disableButton(swiftbot.Button.A);
+        swiftBot.disableButton(swiftbot.Button.B);
+
+        if (resume) {
+            if (processInput(unfinished.payload, maxShapesPerQR, unfinished)) {
+                return;
+            }
+            // Checked again with today's calibration and settings (e.g. a recalibration changed the
+            // time estimate), so it would be offered again on every start if it stayed in the journal
+            System.out.println("The unfinished job no longer passes the pre-flight check (see above), so it can't be finished.");
+        }
+        try {
+            journal.clear();
+            System.out.println("Unfinished job discarded.");
+        } catch (IOException e) {
+            System.out.println("Error clearing job journal: " + e.getMessage());
+        }
+    }
+
+    // Method to close the job journal
+    private static void closeJournal() {
+        if (journal == null) {
+            return;
+        }
+        try {
+            journal.close();
+        } catch (IOException e) {
+            System.out.println("Error closing job journal: " + e.getMessage());
+        }
+    }
+
+    // Method to write out and close the drawing log
+    private static void closeShapeLog() {
+        if (shapeLogWriter == null) {
+            return;
+        }
+        try {
+            shapeLogWriter.close();
+        } catch (IOException e) {
+            System.out.println("Error closing drawing log: " + e.getMessage());
+        }
+    }
+
+    // Method to write the drawing log entries and totals, reading them back from the binary log
+    private static void writeLogSummary(PrintWriter writer, String entryPrefix) throws IOException {
+        if (shapeLogWriter == null) {
+            writer.println("No shapes drawn yet.");
+            return;
+        }
+        shapeLogWriter.flush(); // Make buffered records visible to the reader
+        new ShapeLogReader(shapeLogWriter.getDirectory(), shapeLogWriter.getSession()).writeSummary(writer, entryPrefix);
+    }
+
+    // Shapes read ahead of the robot in batch mode
+    private static final int BATCH_LOOK_AHEAD = 16;
+
     // Main method to run the program
+    // Run with "--batch <file|folder|->" to draw shape programs without scanning QR codes,
+    // or "--calibrate" to measure this robot's move and turn times
     public static void main(String[] args) {
-        Scanner scanner = new Scanner(System.in);
-        boolean running = true;
-
-        // Add button listeners for 'Y' and 'X'
-        System.out.println("\nPress 'Y' to scan another QR code or 'X' to exit.");
-        swiftBot.enableButton(swiftbot.Button.Y, () -> {
-            System.out.println("\nRestarting...");
-            swiftBot.disableButton(swiftbot.Button.Y); // Disable the 'Y' button after pressing
-            // Continue the program to scan a new QR code
-        });
-
-        swiftBot.enableButton(swiftbot.Button.X, () -> {
-            System.out.println("\nThanks for using SwiftBot Shape Drawer!");
-            saveLogToFile(); // Save logs to a file before exiting
-            System.exit(0); // Terminate the program
-        });
-
-        while (running) {
-            displayHeader("SwiftBot Shape Drawing Program");
-            System.out.println("Welcome! This program reads QR codes to draw squares and triangles.");
-            System.out.println("\nHow to Use:");
-            System.out.println("  - Scan a QR Code containing shape information.");
-            System.out.println("  - Input Examples:");
-            System.out.println("       S-30 (Square of 30 cm)");
-            System.out.println("       T-20-30-40 (Triangle with sides 20, 30, 40 cm)");
-            System.out.println("  - Multiple shapes can be specified using '&' as a delimiter.");
-            System.out.println("       Example: S-30&T-20-30-40");
-            System.out.println("\nImportant:");
-            System.out.println("  - Side lengths must be between 15 cm - 85 cm.");
-            System.out.println("  - You have 60 seconds to display a QR code.\n");
-            System.out.println("========================================================================================\n");
-
-            // Start by scanning a QR code
-            scanQRCode();
-
-            // Wait for user to press 'Y' or 'X'
-            System.out.println("\nPress 'Y' to scan another QR code or 'X' to exit.");
-            while (true) {
-                // Wait for button press
-                try {
-                    Thread.sleep(100); // Sleep to avoid busy-waiting
-                } catch (InterruptedException e) {
-                    e.printStackTrace();
-                }
-            }
+        initSwiftBot();
+        loadCalibration();
+        if (args.length >= 1 && args[0].equals("--calibrate")) {
+            runCalibration();
+            System.exit(0);
+        }
+        openShapeLog();
+        startMetricsDump();
+        if (args.length >= 2 && args[0].equals("--batch")) {
+            runBatch(args[1]);
+            return;
+        }
+        JobJournal.Unfinished unfinished = openJournal(); // Only QR jobs are journalled, batch input can be run again
+        if (unfinished != null) {
+            offerResume(unfinished);
+        }
+        DrawerController controller = new DrawerController(SwiftBotShapeDrawer::scanQRCode,
+                SwiftBotShapeDrawer::processInput, SwiftBotShapeDrawer::saveLogToFile);
+
+        // Button presses are queued for the controller rather than handled on the button thread
+        swiftBot.enableButton(swiftbot.Button.Y, () -> controller.post(DrawerController.Event.SCAN));
+        swiftBot.enableButton(swiftbot.Button.X, () -> controller.post(DrawerController.Event.EXIT));
+
+        displayHeader("SwiftBot Shape Drawing Program");
+        System.out.println("Welcome! This program reads QR codes to draw squares and triangles.");
+        System.out.println("\nHow to Use:");
+        System.out.println("  - Scan a QR Code containing shape information.");
+        System.out.println("  - Input Examples:");
+        System.out.println("       S-30 (Square of 30 cm)");
+        System.out.println("       T-20-30-40 (Triangle with sides 20, 30, 40 cm)");
+        System.out.println("  - Multiple shapes can be specified using '&' as a delimiter.");
+        System.out.println("       Example: S-30&T-20-30-40");
+        System.out.println("\nImportant:");
+        System.out.println("  - Side lengths must be between 15 cm - 85 cm.");
+        System.out.println("  - You have 60 seconds to display a QR code.");
+        System.out.println("  - Press 'Y' to scan another QR code or 'X' to exit.\n");
+        System.out.println("========================================================================================\n");
+
+        try {
+            controller.run(); // Scan, draw and summarise until 'X' is pressed
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+
+        swiftBot.disableButton(swiftbot.Button.Y);
+        swiftBot.disableButton(swiftbot.Button.X);
+        System.out.println("\nThanks for using SwiftBot Shape Drawer!");
+        saveLogToFile(); // Save logs to a file before exiting
+        closeShapeLog(); // Force the binary log to disk
+        closeDrawer(); // Turn the underlights off and finish the path previews
+        closeJournal();
+        closeMetrics(); // Write the final timings
+        System.exit(0); // Terminate the program
+    }
+
+    // QR scanning settings
+    private static final int QR_TIMEOUT_MS = 60000; // Time allowed to display a QR code
+    private static final int QR_FRAMES_PER_SECOND = Integer.getInteger("swiftbot.qrFramesPerSecond", 10); // Camera capture rate (-D setting)
+    private static final int QR_QUEUE_CAPACITY = 2; // Frames waiting to be decoded before the oldest is dropped
+    private static final int QR_DECODE_THREADS = 2; // Number of frames decoded in parallel
+    private static final double QR_DOWNSCALE = 0.5; // Size of the grayscale copy tried before the full frame
+
+    // Whether to try the last code region and a downscaled copy before the full frame
+    // (turn off with -Dswiftbot.qrRegionDecode=false)
+    private static final boolean QR_REGION_DECODE = Boolean.parseBoolean(System.getProperty("swiftbot.qrRegionDecode", "true"));
+
+    // QR scanner, created on first use
+    private static QRScanPipeline qrScanner;
+    private static final AtomicReference<String> lastRejectedCode = new AtomicReference<>(""); // Last code rejected this scan
+
+    // Method to draw shape programs from a file, folder or standard input, then save the log and exit
+    private static void runBatch(String source) {
+        displayHeader("SwiftBot Shape Drawing Program - Batch Mode");
+        try {
+            new BatchJobRunner(source, BATCH_LOOK_AHEAD).run();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            System.out.println("Batch interrupted.");
         }
-        scanner.close();
+        saveLogToFile(); // Save logs to a file before exiting
+        closeShapeLog(); // Force the binary log to disk
+        closeDrawer(); // Turn the underlights off and finish the path previews
+        closeMetrics(); // Write the final timings
+        System.exit(0);
     }
 
-    // Method to scan a QR code
-    private static void scanQRCode() {
-        // Set a 60-second timer to detect a QR code
-        long start_time = System.currentTimeMillis();
-        long end_time = start_time + 60000;
+    // Method to scan a QR code, returning its text or an empty string if none was found
+    private static String scanQRCode() {
+        if (qrScanner == null) {
+            QRSource camera = new QRSource() {
+                @Override
+                public BufferedImage captureFrame() {
+                    return swiftBot.getQRImage(); // Capture QR code image
+                }
+
+                @Override
+                public String decode(BufferedImage frame) {
+                    return swiftBot.decodeQRImage(frame); // Decode QR code
+                }
+            };
+            if (QR_REGION_DECODE) {
+                camera = new RegionOfInterestDecoder(camera, QR_DOWNSCALE, QR_QUEUE_CAPACITY + QR_DECODE_THREADS);
+            }
+            qrScanner = new QRScanPipeline(camera, QR_FRAMES_PER_SECOND, QR_QUEUE_CAPACITY, QR_DECODE_THREADS, metrics,
+                    SwiftBotShapeDrawer::acceptScannedCode);
+        }
+        lastRejectedCode.set("");
+        // The scanner's counters cover every scan, so remember them to report this scan on its own
+        long captured = qrScanner.getFramesCaptured(), decoded = qrScanner.getFramesDecoded();
+        long dropped = qrScanner.getFramesDropped(), rejected = qrScanner.getCodesRejected();
 
         String QRstr = "";
-        while (System.currentTimeMillis() < end_time && QRstr.isEmpty()) {
-            BufferedImage QR = swiftBot.getQRImage(); // Capture QR code image
-            QRstr = swiftBot.decodeQRImage(QR); // Decode QR code
+        long start = Metrics.now();
+        try {
+            QRstr = qrScanner.scan(QR_TIMEOUT_MS); // Wait up to 60 seconds for a QR code
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt(); // Scan cancelled, let the controller see it
+            return "";
+        } finally {
+            metrics.timer("qr_scan").record(start);
         }
+        System.out.println("- Frames captured: " + (qrScanner.getFramesCaptured() - captured)
+                + ", decoded: " + (qrScanner.getFramesDecoded() - decoded)
+                + ", dropped: " + (qrScanner.getFramesDropped() - dropped)
+                + ", codes rejected: " + (qrScanner.getCodesRejected() - rejected));
 
         if (QRstr.isEmpty()) {
             System.out.println("No QR code detected within the given time.");
         } else {
             System.out.println("- QR code detected: " + QRstr);
-            processInput(QRstr); // Process the QR code input
         }
+        return QRstr;
     }
 
     // Method to save logs to a file
-    private static void saveLogToFile() {
+    private static synchronized void saveLogToFile() {
         String filePath = "SwiftBot_Shape_Log.txt";
         try (PrintWriter writer = new PrintWriter(new FileWriter(filePath))) {
             writer.println("Drawing Log Summary");
             writer.println("===================");
-
-            if (shapeLog.isEmpty()) {
-                writer.println("No shapes drawn yet.");
-            } else {
-                for (String log : shapeLog) {
-                    writer.println(log); // Write each log entry
-                }
-                writer.println("\n- Largest Shape: " + largestShape + " (Area: " + largestArea + " cm^2)");
-                String frequentShape = (squareCount >= triangleCount && squareCount >= circleCount) ? "Square" :
-                        (triangleCount >= circleCount) ? "Triangle" : "Circle"; // Determine most frequent shape
-                int count = Math.max(squareCount, Math.max(triangleCount, circleCount)); // Get count of most frequent shape
-                writer.println("- Most Frequently Drawn Shape: " + frequentShape + " (" + count + " times)");
-                writer.printf("- Average Drawing Time: %.2f seconds\n", totalTime / shapeCount);
-            }
+            writeLogSummary(writer, ""); // Regenerate the summary from the binary log
+            trajectoryCache.writeSummary(writer, "");
 
             System.out.println("Log file saved to: " + new File(filePath).getAbsolutePath());
         } catch (IOException e) {
@@ -148,222 +453,230 @@ public class SwiftBotShapeDrawer {
         }
     }
 
-    // Maximum number of shapes allowed per QR code
-    private static final int MAX_SHAPES_PER_QR = 5;
-
-    // Method to process the input from the QR code
-    private static void processInput(String input) {
-        String[] commands = input.split("&"); // Split input by '&' delimiter
+    // Maximum number of shapes allowed per QR code (can be changed with -Dswiftbot.maxShapesPerQR=N)
+    static int maxShapesPerQR = Integer.getInteger("swiftbot.maxShapesPerQR", 5);
 
-        if (commands.length > MAX_SHAPES_PER_QR) {
-            System.out.println("\nERROR: You can specify a maximum of 5 shapes per QR code.");
-            return;
-        }
+    // Whether multi-shape jobs are laid out and ordered by the path optimizer instead of backing off 15 cm
+    // between shapes (turn off with -Dswiftbot.pathOptimizer=false)
+    static boolean pathOptimization = Boolean.parseBoolean(System.getProperty("swiftbot.pathOptimizer", "true"));
 
-        for (int i = 0; i < commands.length; i++) {
-            String command = commands[i].trim();
-            String[] parts = command.split("-"); // Split command into parts
+    // Floor area available for a job, in cm actually driven
+    private static final PathOptimizer pathOptimizer = new PathOptimizer(
+            Integer.getInteger("swiftbot.canvasWidth", 150), Integer.getInteger("swiftbot.canvasHeight", 150), 5);
 
-            if (parts.length < 2) {
-                System.out.println("\nERROR: Invalid input detected in command " + (i + 1));
-                continue;
-            }
+    // Pre-flight check of every job, with the longest job allowed (can be set with
+    // -Dswiftbot.jobTimeBudgetMs=N, 0 for no limit)
+    private static final JobValidator jobValidator = new JobValidator(pathOptimizer,
+            Long.getLong("swiftbot.jobTimeBudgetMs", 10 * 60 * 1000));
 
-            String shapeType = parts[0].toUpperCase(); // Extract shape type
+    // Pre-flight check of batch lines and fleet jobs, whose shapes are drawn one after another
+    // with 15 cm back-offs and have no time limit
+    private static final JobValidator backOffValidator = new JobValidator(pathOptimizer, 0, false);
 
-            try {
-                if (shapeType.equals("S")) {
-                    int side = Integer.parseInt(parts[1]); // Extract side length for square
-                    if (validateSideLength(side)) {
-                        Shape square = new Square(side); // Create Square object
-                        square.draw(); // Draw the square
-                    } else {
-                        System.out.println("\nERROR: Side length must be between 15 cm - 85 cm.");
-                    }
-                } else if (shapeType.equals("T")) {
-                    if (parts.length != 4) {
-                        System.out.println("\nERROR: Invalid Triangle format in command " + (i + 1));
-                        continue;
-                    }
-                    int a = Integer.parseInt(parts[1]); // Extract side a
-                    int b = Integer.parseInt(parts[2]); // Extract side b
-                    int c = Integer.parseInt(parts[3]); // Extract side c
-                    if (validateTriangle(a, b, c)) {
-                        Shape triangle = new Triangle(a, b, c); // Create Triangle object
-                        triangle.draw(); // Draw the triangle
-                    } else {
-                        System.out.println("\nERROR: Invalid triangle sides in command " + (i + 1));
-                    }
-                } else if (shapeType.equals("C")) {
-                    int diameter = Integer.parseInt(parts[1]); // Extract diameter for circle
-                    if (validateSideLength(diameter)) {
-                        Shape circle = new Circle(diameter); // Create Circle object
-                        circle.draw(); // Draw the circle
-                    } else {
-                        System.out.println("\nERROR: Diameter must be between 15 cm - 85 cm.");
-                    }
-                } else {
-                    System.out.println("\nERROR: Invalid Shape Type in command " + (i + 1));
-                }
+    static JobValidator getJobValidator() {
+        return jobValidator;
+    }
 
-            } catch (NumberFormatException e) {
-                System.out.println("\nERROR: Invalid number format in command " + (i + 1));
-            }
+    static JobValidator getBackOffValidator() {
+        return backOffValidator;
+    }
 
-            // Move backwards to start the next shape
-            if (i < commands.length - 1) {
-                moveBackwards(15);
-            }
-        }
+    // Method to process the input from the QR code
+    static void processInput(String input) {
+        processInput(input, maxShapesPerQR);
     }
 
-    // Method to move the SwiftBot forward
-    private static void moveForward(int timeMs) {
-        try {
-            swiftBot.move(LEFT_MOTOR_SPEED, RIGHT_MOTOR_SPEED, timeMs); // Move forward
-        } catch (Exception e) {
-            System.out.println("Error moving forward: " + e.getMessage());
-        }
+    // Method to process shape commands, allowing up to maxShapes shapes
+    // Returns false if the job was rejected by the pre-flight check
+    static boolean processInput(CharSequence input, int maxShapes) {
+        return processInput(input, maxShapes, null);
     }
 
-    // Method to turn the SwiftBot left
-    private static void turnLeft(int timeMs) {
-        try {
-            swiftBot.move(-50, 50, timeMs); // Turn left
-        } catch (Exception e) {
-            System.out.println("Error turning left: " + e.getMessage());
+    // Method to process shape commands, carrying on from where an unfinished job stopped if resume isn't null
+    private static boolean processInput(CharSequence input, int maxShapes, JobJournal.Unfinished resume) {
+        long start = Metrics.now();
+        ShapeCommandBuffer program = new ShapeCommandBuffer();
+        ShapeCommandScanner.scan(input, maxShapes, program);
+        metrics.timer("parse").record(start);
+
+        // Check the whole job before the robot moves: the commands, then the layout and time they need
+        long stage = Metrics.now();
+        JobValidator.Report report = jobValidator.checkShapes(program, maxShapes);
+        metrics.timer("validate").record(stage);
+        stage = Metrics.now();
+        jobValidator.checkPlan(report); // Trajectories (timed again on their own as plan_trajectory) and layout
+        metrics.timer("plan").record(stage);
+        if (!report.isValid()) {
+            System.out.println("\nJob rejected, nothing was drawn:");
+            rejectJob(report);
+            return false;
         }
-    }
 
-    // Method to move the SwiftBot backwards
-    private static void moveBackwards(int distanceCm) {
-        int moveTime = (int) (distanceCm * MOVE_TIME_PER_CM * TRAVEL_SCALE_FACTOR);
-        try {
-            swiftBot.move(-LEFT_MOTOR_SPEED, -RIGHT_MOTOR_SPEED, moveTime); // Move backwards
-            System.out.println("Moved " + distanceCm + " cm backwards to start next shape.");
-        } catch (Exception e) {
-            System.out.println("Error moving backwards: " + e.getMessage());
+        UnderlightFeedback feedback = drawer.getFeedback();
+        long waitSavedBefore = feedback.getWaitSavedMs();
+        drawer.beginJob(input.toString(), resume); // Journal the job before the robot moves
+        drawProgram(report);
+        drawer.endJob();
+        feedback.clearProgress();
+        metrics.timer("job").record(start);
+        long waitSaved = feedback.getWaitSavedMs() - waitSavedBefore;
+        if (waitSaved > 0) {
+            System.out.printf("%nJob finished. Underlights blinked alongside drawing, saving %.1f seconds of waiting.%n", waitSaved / 1000.0);
         }
+        return true;
     }
 
-    // Method to validate side length
-    private static boolean validateSideLength(int length) {
-        return length >= MIN_SIDE_LENGTH && length <= MAX_SIDE_LENGTH;
+    // Method to report a job that failed the pre-flight check: print every problem and flash red
+    static void rejectJob(JobValidator.Report report) {
+        printProblems(report);
+        drawer.getFeedback().signalError();
     }
 
-    // Method to validate triangle sides
-    private static boolean validateTriangle(int a, int b, int c) {
-        return validateSideLength(a) && validateSideLength(b) && validateSideLength(c) && (a + b > c && a + c > b && b + c > a);
+    // Method to print every problem found by the pre-flight check
+    private static void printProblems(JobValidator.Report report) {
+        for (JobValidator.Problem problem : report.problems) {
+            System.out.println("ERROR: " + problem.message);
+        }
     }
 
-    // Method to blink SwiftBot underlights
-    private static void blinkUnderlights() {
-        try {
-            int[] greenColor = {0, 255, 0}; // Green color for underlights
-            int blinkCount = 3; // Number of blinks
-            int blinkDuration = 500; // Duration of each blink in milliseconds
+    // Method used by the QR scanner to check each decoded code, so a job that can't be drawn is
+    // skipped while the camera keeps looking (each rejected code is reported once per scan)
+    private static boolean acceptScannedCode(String payload) {
+        JobValidator.Report report = jobValidator.validate(payload, maxShapesPerQR);
+        if (report.isValid()) {
+            return true;
+        }
+        if (!payload.equals(lastRejectedCode.getAndSet(payload))) {
+            synchronized (lastRejectedCode) { // Decode threads report one at a time
+                System.out.println("- QR code rejected: " + payload);
+                printProblems(report);
+                System.out.println("Show a corrected QR code, or press 'X' to cancel.");
+            }
+            drawer.getFeedback().signalError();
+        }
+        return false;
+    }
 
-            System.out.println("Blinking underlights in green...");
+    // Method to draw the shapes of a job that passed the pre-flight check, with the layout it was checked with
+    private static void drawProgram(JobValidator.Report report) {
+        if (report.plan != null) {
+            drawOptimized(report.plan);
+            return;
+        }
+        if (pathOptimization && report.shapes.size() > 1) {
+            System.out.println("\nShapes don't fit on the canvas, drawing them one after another instead.");
+        }
+        drawer.drawAll(report.shapes); // Back off 15 cm between shapes
+    }
 
-            for (int i = 0; i < blinkCount; i++) {
-                swiftBot.fillUnderlights(greenColor); // Turn on underlights
-                Thread.sleep(blinkDuration); // Wait
-                swiftBot.disableUnderlights(); // Turn off underlights
-                Thread.sleep(blinkDuration); // Wait
+    // Method to draw the shapes of a job in the order and places chosen by the path optimizer
+    private static void drawOptimized(PathOptimizer.PathPlan plan) {
+
+        System.out.printf("%nPath plan: %d shapes, %.1f cm between shapes, %.1f seconds of travel (15 cm back-offs: %.1f seconds)%n",
+                plan.shapes.size(), plan.transitCm, plan.transitTimeMs / 1000.0, plan.baselineTimeMs / 1000.0);
+        for (int i = 0; i < plan.shapes.size(); i++) {
+            double[] transit = plan.transits.get(i);
+            if (transit[1] >= 0.5) {
+                System.out.printf("Moving %.1f cm to the next shape.%n", transit[1]);
+                drawer.turnByDegrees(transit[0]); // Face the start of the next shape
+                drawer.moveForwardCm(transit[1]);
+                drawer.turnByDegrees(transit[2]); // Face the drawing direction again
             }
-        } catch (Exception e) {
-            System.out.println("Error blinking underlights: " + e.getMessage());
+            drawer.draw(plan.shapes.get(i));
         }
     }
 
-    // Method to log square details
-    private static void logSquare(String type, int side, double timeMs) {
-        double timeSeconds = timeMs / 1000.0; // Convert time to seconds
-        double area = side * side; // Calculate area of square
-        shapeLog.add(type + ": " + side + " cm (Time: " + timeSeconds + " seconds)"); // Add to log
-        updateLargestShape(type, area); // Update largest shape
-        totalTime += timeSeconds; // Update total time
-        shapeCount++; // Increment shape count
-        squareCount++; // Increment square count
+    // Method to estimate how long the robot takes to draw a job's valid shapes (ms), including the
+    // moves between them: those of the path plan, or 15 cm back-offs if plan is null
+    static double estimateDrawingMs(List<Shape> shapes, PathOptimizer.PathPlan plan) {
+        double total = 0;
+        for (Shape shape : shapes) {
+            total += TrajectoryPlanner.totalTime(shape.plan());
+        }
+        if (plan != null) {
+            return total + plan.transitTimeMs;
+        }
+        int backOffs = Math.max(0, shapes.size() - 1); // 15 cm back-off between shapes
+        return total + backOffs * backOffMs();
     }
 
-    // Method to log triangle details
-    private static void logTriangle(String type, int a, int b, int c, double timeMs) {
-        double timeSeconds = timeMs / 1000.0; // Convert time to seconds
-        double s = (a + b + c) / 2.0; // Calculate semi-perimeter
-        double area = Math.sqrt(s * (s - a) * (s - b) * (s - c)); // Calculate area using Heron's formula
-        shapeLog.add(type + ": " + a + ", " + b + ", " + c + " cm (Time: " + timeSeconds + " seconds)"); // Add to log
-        updateLargestShape(type, area); // Update largest shape
-        totalTime += timeSeconds; // Update total time
-        shapeCount++; // Increment shape count
-        triangleCount++; // Increment triangle count
+    // Method to estimate how long one 15 cm back-off between shapes takes (ms)
+    static double backOffMs() {
+        return calibration.moveTime(15 * TRAVEL_SCALE_FACTOR);
     }
 
-    // Method to log circle details
-    private static void logCircle(String type, int diameter, double timeMs) {
-        double timeSeconds = timeMs / 1000.0; // Convert time to seconds
-        double radius = diameter / 2.0; // Calculate radius
-        double area = Math.PI * radius * radius; // Calculate area of circle
-        shapeLog.add(type + ": " + diameter + " cm diameter (Time: " + timeSeconds + " seconds)"); // Add to log
-        updateLargestShape(type, area); // Update largest shape
-        totalTime += timeSeconds; // Update total time
-        shapeCount++; // Increment shape count
-        circleCount++; // Increment circle count
+    // Method to move the SwiftBot backwards
+    static void moveBackwards(int distanceCm) {
+        drawer.moveBackwards(distanceCm);
     }
 
-    // Method to update the largest shape drawn
-    private static void updateLargestShape(String type, double area) {
-        if (area > largestArea) {
-            largestArea = area; // Update largest area
-            largestShape = type; // Update largest shape type
-        }
+    // Method to validate side length
+    static boolean validateSideLength(int length) {
+        return length >= MIN_SIDE_LENGTH && length <= MAX_SIDE_LENGTH;
+    }
+
+    // Method to validate triangle sides
+    static boolean validateTriangle(int a, int b, int c) {
+        return validateSideLength(a) && validateSideLength(b) && validateSideLength(c) && (a + b > c && a + c > b && b + c > a);
     }
 
     // Method to display a header
-    private static void displayHeader(String title) {
+    static void displayHeader(String title) {
         System.out.println("\n========================================================================================");
         System.out.println("                                  " + title);
         System.out.println("========================================================================================\n");
     }
 
-    // Method to save and display the drawing log
-    private static void saveLog() {
-        displayHeader("Drawing Log Summary");
-
-        if (shapeLog.isEmpty()) {
-            System.out.println("No shapes drawn yet.");
-        } else {
-            for (String log : shapeLog) {
-                System.out.println(" - " + log); // Display each log entry
-            }
-            System.out.println("\n- Largest Shape: " + largestShape + " (Area: " + largestArea + " cm^2)");
-            String frequentShape = (squareCount >= triangleCount && squareCount >= circleCount) ? "Square" :
-                    (triangleCount >= circleCount) ? "Triangle" : "Circle"; // Determine most frequent shape
-            int count = Math.max(squareCount, Math.max(triangleCount, circleCount)); // Get count of most frequent shape
-            System.out.println("- Most Frequently Drawn Shape: " + frequentShape + " (" + count + " times)");
-            System.out.printf("- Average Drawing Time: %.2f seconds\n", totalTime / shapeCount); // Calculate average time
-        }
-    }
-
     // Abstract Shape class
     abstract static class Shape {
         protected String type; // Type of shape (Square, Triangle, Circle)
         protected double area; // Area of the shape
-        protected double timeMs; // Time taken to draw the shape
+        protected double timeMs; // Time taken to draw the shape (measured, from planning to the last motor command)
+
+        // Method to draw the shape with this program's robot
+        public void draw() {
+            drawer.draw(this);
+        }
+
+        public abstract void draw(ShapeDrawerWorker worker); // Abstract method to draw the shape with a robot
+
+        // Method to get the motor commands for the shape with the current calibration, from the
+        // trajectory cache when the same shape has been planned before (the array must not be modified)
+        int[] plan() {
+            long start = Metrics.now();
+            int[] trajectory = trajectoryCache.get(cacheKey(), calibration, this::compile);
+            metrics.timer("plan_trajectory").record(start);
+            return trajectory;
+        }
+
+        // Method to work out how long the shape took to draw (ms) since a start time from Metrics.now()
+        protected double measureDrawTime(long startNanos) {
+            double ms = (System.nanoTime() - startNanos) / 1e6;
+            metrics.timer("shape_" + type.toLowerCase()).recordMs(ms);
+            return ms;
+        }
+
+        // Method to plan the motor commands for the shape from scratch (see TrajectoryPlanner)
+        abstract int[] compile();
+
+        // Method to get the canonical command for the shape, e.g. "S-30", used as its cache key
+        abstract String cacheKey();
 
-        public abstract void draw(); // Abstract method to draw the shape
+        // Method to get the area covered on the floor, in cm actually driven, relative to the start
+        // position with the robot facing +x: {minX, minY, maxX, maxY}
+        public abstract double[] footprint();
 
         // Method to log the shape details
-        protected void logShape() {
+        protected void logShape(ShapeDrawerWorker worker) {
             if (type.equals("Square")) {
                 Square square = (Square) this;
-                logSquare(type, square.side, timeMs); // Log square
+                worker.logSquare(type, square.side, timeMs); // Log square
             } else if (type.equals("Triangle")) {
                 Triangle triangle = (Triangle) this;
-                logTriangle(type, triangle.a, triangle.b, triangle.c, timeMs); // Log triangle
+                worker.logTriangle(type, triangle.a, triangle.b, triangle.c, timeMs); // Log triangle
             } else if (type.equals("Circle")) {
                 Circle circle = (Circle) this;
-                logCircle(type, circle.diameter, timeMs); // Log circle
+                worker.logCircle(type, circle.diameter, timeMs); // Log circle
             }
         }
     }
@@ -379,38 +692,38 @@ public class SwiftBotShapeDrawer {
         }
 
         @Override
-        public void draw() {
-            int moveTime = (int) (side * MOVE_TIME_PER_CM * TRAVEL_SCALE_FACTOR); // Calculate move time
-            int turnTime = TURN_TIME_90_DEGREES; // Time to turn 90 degrees
-            int widerLastTurnTime = (int) (turnTime * 1.15); // Increase last turn time by 15%
+        public double[] footprint() {
+            double s = side * TRAVEL_SCALE_FACTOR; // Drawn side length
+            return new double[] {0, 0, s, s}; // Drawn to the left of the start position
+        }
 
-            System.out.println("\nDrawing Square: " + side + " cm");
-            System.out.println("Processing... Drawing in progress.");
+        @Override
+        int[] compile() {
+            return new TrajectoryPlanner(calibration).regularPolygon(4, side * TRAVEL_SCALE_FACTOR);
+        }
 
-            int lastProgress = -1; // Track progress percentage
+        @Override
+        String cacheKey() {
+            return "S-" + side;
+        }
 
-            for (int i = 0; i < 4; i++) {
-                moveForward(moveTime); // Move forward
-                if (i == 3) {
-                    turnLeft(widerLastTurnTime); // Wider last turn
-                    System.out.println("Adjusting last turn to align with starting position...");
-                } else {
-                    turnLeft(turnTime); // Normal turn
-                }
+        @Override
+        public void draw(ShapeDrawerWorker worker) {
+            long start = Metrics.now();
+            int[] trajectory = plan(); // Four sides, each followed by a 90 degree turn
 
-                int progress = (i + 1) * 25; // Calculate progress
-                if (progress != lastProgress && (progress % 10 == 0 || progress == 100)) {
-                    System.out.println(progress + "% Complete..."); // Display progress
-                    lastProgress = progress;
-                }
-            }
+            System.out.println("\nDrawing Square: " + side + " cm");
+            System.out.println("Processing... Drawing in progress.");
+            worker.showDrawingProgress(); // Show the progress colour while drawing
+
+            worker.executeTrajectory(trajectory);
 
             System.out.println("Drawing complete!");
-            blinkUnderlights(); // Blink underlights to indicate completion
+            worker.blinkUnderlights(); // Blink underlights to indicate completion
 
-            this.timeMs = moveTime * 4; // Calculate total time
-            logShape(); // Log the square
-            saveLog(); // Save the log
+            this.timeMs = measureDrawTime(start);
+            logShape(worker); // Log the square
+            worker.saveLog(); // Save the log
         }
     }
 
@@ -428,60 +741,45 @@ public class SwiftBotShapeDrawer {
         }
 
         @Override
-        public void draw() {
-            int moveTimeA = (int) (a * MOVE_TIME_PER_CM * TRAVEL_SCALE_FACTOR); // Calculate move time for side a
-            int moveTimeB = (int) (b * MOVE_TIME_PER_CM * TRAVEL_SCALE_FACTOR); // Calculate move time for side b
-            int moveTimeC = (int) (c * MOVE_TIME_PER_CM * TRAVEL_SCALE_FACTOR); // Calculate move time for side c
-            int turnTime = TURN_TIME_120_DEGREES; // Time to turn 120 degrees
-            int widerTurnTimeSecond = (int) (turnTime * 1.5); // Increase second turn time by 50%
-            int slightlyWiderTurnTimeLast = (int) (turnTime * 1.6); // Increase last turn time by 20%
+        public double[] footprint() {
+            double sa = a * TRAVEL_SCALE_FACTOR, sb = b * TRAVEL_SCALE_FACTOR, sc = c * TRAVEL_SCALE_FACTOR;
+            double cosC = (sa * sa + sb * sb - sc * sc) / (2 * sa * sb); // Angle between sides a and b
+            double x2 = sa - sb * cosC; // Third corner after side a (along +x) and side b
+            double y2 = sb * Math.sqrt(Math.max(0, 1 - cosC * cosC));
+            return new double[] {Math.min(0, x2), 0, Math.max(sa, x2), y2};
+        }
 
-            System.out.println("\nDrawing Triangle: " + a + ", " + b + ", " + c + " cm");
-            System.out.println("Processing... Drawing in progress.");
+        @Override
+        int[] compile() {
+            return new TrajectoryPlanner(calibration).triangle(a * TRAVEL_SCALE_FACTOR, b * TRAVEL_SCALE_FACTOR,
+                    c * TRAVEL_SCALE_FACTOR);
+        }
 
-            int lastProgress = -1; // Track progress percentage
+        @Override
+        String cacheKey() {
+            return "T-" + a + "-" + b + "-" + c; // Side order matters: it sets the direction the triangle is drawn in
+        }
 
-            moveForward(moveTimeA); // Move for side a
-            turnLeft(turnTime); // First turn
-            int progress = 33;
-            if (progress != lastProgress) {
-                System.out.println(progress + "% Complete...");
-                lastProgress = progress;
-            }
+        @Override
+        public void draw(ShapeDrawerWorker worker) {
+            long start = Metrics.now();
+            int[] trajectory = plan(); // Each side followed by a turn through its exterior angle
 
-            moveForward(moveTimeB); // Move for side b
-            turnLeft(widerTurnTimeSecond); // Second turn (wider)
-            progress = 66;
-            if (progress != lastProgress) {
-                System.out.println(progress + "% Complete...");
-                lastProgress = progress;
-            }
+            // Display the triangle angles the turns are planned from
+            double[] angles = TrajectoryPlanner.triangleAngles(a, b, c);
+            System.out.println("\nDrawing Triangle: " + a + ", " + b + ", " + c + " cm");
+            System.out.printf("Triangle Angles: A = %.1f°, B = %.1f°, C = %.1f°%n", angles[0], angles[1], angles[2]);
+            System.out.println("Processing... Drawing in progress.");
+            worker.showDrawingProgress(); // Show the progress colour while drawing
 
-            moveForward(moveTimeC); // Move for side c
-            turnLeft(slightlyWiderTurnTimeLast); // Last turn (slightly wider)
-            progress = 100;
-            if (progress != lastProgress) {
-                System.out.println(progress + "% Complete...");
-                lastProgress = progress;
-            }
+            worker.executeTrajectory(trajectory);
 
             System.out.println("Drawing complete!");
-            blinkUnderlights(); // Blink underlights to indicate completion
-
-            this.timeMs = moveTimeA + moveTimeB + moveTimeC; // Calculate total time
-            logShape(); // Log the triangle
-            saveLog(); // Save the log
-
-            // Calculate and display triangle angles
-            double angleA = calculateAngle(b, c, a);
-            double angleB = calculateAngle(a, c, b);
-            double angleC = calculateAngle(a, b, c);
-            System.out.println("Triangle Angles: A = " + angleA + "°, B = " + angleB + "°, C = " + angleC + "°");
-        }
+            worker.blinkUnderlights(); // Blink underlights to indicate completion
 
-        // Method to calculate an angle of the triangle using the Law of Cosines
-        private double calculateAngle(double a, double b, double c) {
-            return Math.toDegrees(Math.acos((b * b + c * c - a * a) / (2 * b * c)));
+            this.timeMs = measureDrawTime(start);
+            logShape(worker); // Log the triangle
+            worker.saveLog(); // Save the log
         }
     }
 
@@ -497,37 +795,78 @@ public class SwiftBotShapeDrawer {
         }
 
         @Override
-        public void draw() {
-            double radius = diameter / 2.0; // Calculate radius
-            double circumference = 2 * Math.PI * radius; // Calculate circumference
-            int moveTime = (int) (circumference * MOVE_TIME_PER_CM * TRAVEL_SCALE_FACTOR); // Calculate move time
+        public double[] footprint() {
+            double r = diameter / 2.0 * TRAVEL_SCALE_FACTOR; // Drawn radius
+            return new double[] {-r, 0, r, 2 * r}; // Centre is to the left of the start position
+        }
 
+        // Number of arc commands used to drive a full circle in ARC mode (one per quarter for progress updates)
+        private static final int ARC_SEGMENTS = 4;
+
+        // Number of straight sides used to approximate a full circle in POLYLINE mode
+        private static final int POLYLINE_SIDES = 360;
+
+        @Override
+        public void draw(ShapeDrawerWorker worker) {
+            long start = Metrics.now();
             System.out.println("\nDrawing Circle: " + diameter + " cm diameter");
             System.out.println("Processing... Drawing in progress.");
+            worker.showDrawingProgress(); // Show the progress colour while drawing
 
-            int steps = 360; // Number of steps to approximate a circle
-            int stepTime = moveTime / steps; // Time for each step
-            int turnTimePerStep = 10; // Time to turn slightly for each step
+            int[] trajectory = plan();
+            long callsBefore = worker.getMotorCalls();
+            worker.executeTrajectory(trajectory);
 
-            int lastProgress = -1; // Track progress percentage
+            System.out.println("Drawing complete!");
+            worker.blinkUnderlights(); // Blink underlights to indicate completion
 
-            for (int i = 0; i < steps; i++) {
-                moveForward(stepTime); // Move forward
-                turnLeft(turnTimePerStep); // Turn slightly
+            this.timeMs = measureDrawTime(start);
+            System.out.printf("Circle mode: %s (%d motor calls, %.2f seconds)%n", circleMode, worker.getMotorCalls() - callsBefore, timeMs / 1000);
+            logShape(worker); // Log the circle
+            worker.saveLog(); // Save the log
+        }
 
-                int progress = (int) ((i + 1) * 100.0 / steps); // Calculate progress
-                if (progress != lastProgress && (progress % 10 == 0 || progress == 100)) {
-                    System.out.println(progress + "% Complete..."); // Display progress
-                    lastProgress = progress;
-                }
+        // Method to plan the circle as a few arc commands with the outer (right) wheel faster than the inner
+        // one, or in POLYLINE mode as a regular polygon with many short sides
+        @Override
+        int[] compile() {
+            TrajectoryPlanner planner = new TrajectoryPlanner(calibration);
+            if (circleMode == CircleMode.POLYLINE) {
+                double circumference = Math.PI * diameter * TRAVEL_SCALE_FACTOR; // Circumference actually driven
+                return planner.regularPolygon(POLYLINE_SIDES, circumference / POLYLINE_SIDES);
             }
+            int[] arc = planArc();
+            return planner.arc(arc[0], arc[1], arc[2], ARC_SEGMENTS);
+        }
 
-            System.out.println("Drawing complete!");
-            blinkUnderlights(); // Blink underlights to indicate completion
+        @Override
+        String cacheKey() {
+            return "C-" + diameter + "-" + circleMode;
+        }
 
-            this.timeMs = moveTime; // Calculate total time
-            logShape(); // Log the circle
-            saveLog(); // Save the log
+        // Method to work out the wheel speeds and time for one full turn around the circle
+        // Returns {leftSpeed, rightSpeed, timeMs}
+        int[] planArc() {
+            DifferentialDriveModel model = calibration.driveModel();
+            double radiusCm = diameter / 2.0 * TRAVEL_SCALE_FACTOR; // Radius actually driven
+            double halfTrack = model.getTrackWidthCm() / 2;
+            int centreSpeed = (LEFT_MOTOR_SPEED + RIGHT_MOTOR_SPEED) / 2;
+
+            // Wheel speeds are proportional to the radius each wheel follows
+            double outer = centreSpeed * (radiusCm + halfTrack) / radiusCm;
+            double inner = centreSpeed * (radiusCm - halfTrack) / radiusCm;
+            if (outer > 100) { // Keep within the motor range
+                inner = inner * 100 / outer;
+                outer = 100;
+            }
+            int leftSpeed = (int) Math.round(inner);
+            int rightSpeed = (int) Math.round(outer);
+
+            // Time for a full 360 degrees with the rounded speeds
+            double omega = (model.wheelSpeed(rightSpeed) - model.wheelSpeed(leftSpeed)) / model.getTrackWidthCm();
+            int timeMs = (int) Math.round(2 * Math.PI / omega);
+            return new int[] {leftSpeed, rightSpeed, timeMs};
         }
+
     }
 }
\ No newline at end of file
@@ -0,0 +1,107 @@
+package Swiftbot;
+
+import java.awt.*;
+import java.awt.geom.Line2D;
+import java.awt.image.BufferedImage;
+import java.io.*;
+import java.nio.file.*;
+import java.util.*;
+import javax.imageio.ImageIO;
+
+// Unbounded drawing surface stored as fixed-size PNG tiles, so a long session can be drawn
+// without holding one huge image in memory. Only the most recently used tiles are kept in memory;
+// the others are written to "tile_<column>_<row>.png" in the folder and read back if the robot
+// returns to them. Coordinates are in cm with y pointing up (the robot's starting left).
+class TiledCanvas implements Closeable {
+    private final Path folder; // Where the tiles are written
+    private final double pixelsPerCm; // Drawing scale
+    private final int tileSize; // Width and height of each tile in pixels
+    private final int maxTilesInMemory; // Tiles kept in memory before the least recently used is written out
+    private final LinkedHashMap<Long, BufferedImage> tiles = new LinkedHashMap<>(16, 0.75f, true); // In access order
+
+    TiledCanvas(Path folder, double pixelsPerCm, int tileSize, int maxTilesInMemory) throws IOException {
+        if (!(pixelsPerCm > 0) || tileSize <= 0 || maxTilesInMemory <= 0) {
+            throw new IllegalArgumentException("Scale, tile size and tiles in memory must be positive");
+        }
+        Files.createDirectories(folder);
+        this.folder = folder;
+        this.pixelsPerCm = pixelsPerCm;
+        this.tileSize = tileSize;
+        this.maxTilesInMemory = maxTilesInMemory;
+    }
+
+    // Method to draw a line between two points in cm
+    void drawLine(double x1, double y1, double x2, double y2, Color colour) throws IOException {
+        double px1 = x1 * pixelsPerCm, py1 = -y1 * pixelsPerCm; // Image rows grow downwards
+        double px2 = x2 * pixelsPerCm, py2 = -y2 * pixelsPerCm;
+        int firstColumn = Math.floorDiv((int) Math.floor(Math.min(px1, px2)) - 1, tileSize);
+        int lastColumn = Math.floorDiv((int) Math.ceil(Math.max(px1, px2)) + 1, tileSize);
+        int firstRow = Math.floorDiv((int) Math.floor(Math.min(py1, py2)) - 1, tileSize);
+        int lastRow = Math.floorDiv((int) Math.ceil(Math.max(py1, py2)) + 1, tileSize);
+
+        // Draw the line on every tile its bounding box touches; each tile clips it to its own area
+        for (int column = firstColumn; column <= lastColumn; column++) {
+            for (int row = firstRow; row <= lastRow; row++) {
+                Graphics2D g = tile(column, row).createGraphics();
+                try {
+                    g.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
+                    g.setColor(colour);
+                    g.setStroke(new BasicStroke(2f));
+                    g.translate(-column * tileSize, -row * tileSize);
+                    g.draw(new Line2D.Double(px1, py1, px2, py2));
+                } finally {
+                    g.dispose();
+                }
+            }
+        }
+    }
+
+    // Method to get a tile, reading it back from disk or creating it if it isn't in memory
+    private BufferedImage tile(int column, int row) throws IOException {
+        long key = ((long) column << 32) | (row & 0xffffffffL);
+        BufferedImage image = tiles.get(key);
+        if (image != null) {
+            return image;
+        }
+
+        Path file = fileFor(column, row);
+        if (Files.exists(file)) {
+            BufferedImage saved = ImageIO.read(file.toFile());
+            image = new BufferedImage(tileSize, tileSize, BufferedImage.TYPE_INT_RGB);
+            image.getGraphics().drawImage(saved, 0, 0, null);
+        } else {
+            image = new BufferedImage(tileSize, tileSize, BufferedImage.TYPE_INT_RGB);
+            Graphics2D g = image.createGraphics();
+            g.setColor(Color.WHITE);
+            g.fillRect(0, 0, tileSize, tileSize);
+            g.dispose();
+        }
+        tiles.put(key, image);
+
+        if (tiles.size() > maxTilesInMemory) { // Write out the least recently used tile
+            Iterator<Map.Entry<Long, BufferedImage>> oldest = tiles.entrySet().iterator();
+            Map.Entry<Long, BufferedImage> entry = oldest.next();
+            write(entry.getKey(), entry.getValue());
+            oldest.remove();
+        }
+        return image;
+    }
+
+    // Method to write a tile to its file
+    private void write(long key, BufferedImage image) throws IOException {
+        ImageIO.write(image, "png", fileFor((int) (key >> 32), (int) key).toFile());
+    }
+
+    private Path fileFor(int column, int row) {
+        return folder.resolve("tile_" + column + "_" + row + ".png");
+    }
+
+    // Method to write every tile still in memory
+    @Override
+    public void close() throws IOException {
+        for (Map.Entry<Long, BufferedImage> entry : tiles.entrySet()) {
+            write(entry.getKey(), entry.getValue());
+        }
+        tiles.clear();
+    }
+}
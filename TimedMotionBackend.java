@@ -0,0 +1,49 @@
+package Swiftbot;
+
+// Motion backend wrapper that times every motor command and underlight change made through it.
+class TimedMotionBackend implements MotionBackend {
+    private final MotionBackend backend; // Backend doing the actual work
+    private final Metrics.Timer moveTimer; // Time spent in each motor command
+    private final Metrics.Timer underlightTimer; // Time spent changing the underlights
+
+    TimedMotionBackend(MotionBackend backend, Metrics metrics) {
+        this.backend = backend;
+        this.moveTimer = metrics.timer("motor_move");
+        this.underlightTimer = metrics.timer("feedback_underlights");
+    }
+
+    @Override
+    public void move(int leftSpeed, int rightSpeed, int timeMs) throws InterruptedException {
+        long start = Metrics.now();
+        try {
+            backend.move(leftSpeed, rightSpeed, timeMs);
+        } finally {
+            moveTimer.record(start);
+        }
+    }
+
+    @Override
+    public void fillUnderlights(int[] rgb) {
+        long start = Metrics.now();
+        try {
+            backend.fillUnderlights(rgb);
+        } finally {
+            underlightTimer.record(start);
+        }
+    }
+
+    @Override
+    public void disableUnderlights() {
+        long start = Metrics.now();
+        try {
+            backend.disableUnderlights();
+        } finally {
+            underlightTimer.record(start);
+        }
+    }
+
+    @Override
+    public void pause(long timeMs) throws InterruptedException {
+        backend.pause(timeMs); // Deliberate waits are not timed
+    }
+}
@@ -0,0 +1,91 @@
+package Swiftbot;
+
+import java.io.PrintWriter;
+import java.util.*;
+import java.util.function.Supplier;
+
+// Bounded least-recently-used cache of planned trajectories, so shapes that are drawn again and
+// again (e.g. S-30 or C-40) are only planned once.
+// Keys are canonical shape commands (see Shape.cacheKey). Every trajectory depends on the
+// calibration it was planned with, so the whole cache is emptied whenever the profile changes.
+// Cached arrays are shared between callers and must not be modified.
+class TrajectoryCache {
+    private final int capacity; // Maximum number of trajectories kept
+    private final LinkedHashMap<String, int[]> trajectories; // In access order, least recently used first
+    private CalibrationProfile profile; // Calibration the cached trajectories were planned with
+
+    private long hits = 0; // Lookups answered from the cache
+    private long misses = 0; // Lookups that had to plan the trajectory
+    private long evictions = 0; // Trajectories dropped to stay within capacity
+    private long invalidations = 0; // Times the cache was emptied for a new calibration
+
+    TrajectoryCache(int capacity) {
+        if (capacity < 1) {
+            throw new IllegalArgumentException("Capacity must be at least 1");
+        }
+        this.capacity = capacity;
+        this.trajectories = new LinkedHashMap<>(capacity * 2, 0.75f, true);
+    }
+
+    // Method to get the trajectory for a shape, planning and caching it if it isn't already cached
+    synchronized int[] get(String key, CalibrationProfile calibration, Supplier<int[]> planner) {
+        if (calibration != profile) {
+            invalidate();
+            profile = calibration;
+        }
+
+        int[] trajectory = trajectories.get(key);
+        if (trajectory != null) {
+            hits++;
+            return trajectory;
+        }
+
+        misses++;
+        trajectory = planner.get();
+        trajectories.put(key, trajectory);
+        if (trajectories.size() > capacity) {
+            Iterator<String> oldest = trajectories.keySet().iterator();
+            oldest.next();
+            oldest.remove();
+            evictions++;
+        }
+        return trajectory;
+    }
+
+    // Method to drop every cached trajectory (e.g. after recalibrating)
+    synchronized void invalidate() {
+        if (!trajectories.isEmpty()) {
+            trajectories.clear();
+            invalidations++;
+        }
+        profile = null;
+    }
+
+    synchronized int size() {
+        return trajectories.size();
+    }
+
+    synchronized long getHits() {
+        return hits;
+    }
+
+    synchronized long getMisses() {
+        return misses;
+    }
+
+    synchronized long getEvictions() {
+        return evictions;
+    }
+
+    synchronized long getInvalidations() {
+        return invalidations;
+    }
+
+    // Method to write the cache counters as one line
+    synchronized void writeSummary(PrintWriter writer, String prefix) {
+        long lookups = hits + misses;
+        writer.printf("%sTrajectory cache: %d/%d cached, %d hits, %d misses (%.1f%% hit rate), %d evictions, %d invalidations%n",
+                prefix, trajectories.size(), capacity, hits, misses, lookups == 0 ? 0.0 : hits * 100.0 / lookups,
+                evictions, invalidations);
+    }
+}
@@ -0,0 +1,151 @@
+package Swiftbot;
+
+import java.util.Arrays;
+
+// Turns shapes into a flat array of motor commands before the robot starts moving, so drawing
+// is just replaying the array with no maths between steps.
+// Each command takes STRIDE ints: {left speed, right speed, time ms, progress %}, where progress
+// is the percentage to report once the command is done (0 if nothing should be reported).
+// Polygons are driven anticlockwise: along each side, then a left turn by the exterior angle.
+// Times are rounded to whole milliseconds with the remainder carried into the next command, so
+// polygons with many short sides still close up.
+// All distances are in cm actually driven on the floor.
+class TrajectoryPlanner {
+    static final int STRIDE = 4; // Ints per command
+    static final int LEFT = 0, RIGHT = 1, TIME = 2, PROGRESS = 3; // Offsets within a command
+
+    private final CalibrationProfile calibration; // Converts distances and angles to motor times
+
+    TrajectoryPlanner(CalibrationProfile calibration) {
+        this.calibration = calibration;
+    }
+
+    // Method to plan a polygon from its side lengths and the turn after each side
+    // (exterior angles in degrees, positive is left)
+    int[] polygon(double[] sidesCm, double[] turnsDeg) {
+        if (sidesCm.length != turnsDeg.length) {
+            throw new IllegalArgumentException("Need one turn for each side");
+        }
+        int n = sidesCm.length;
+        int[] commands = new int[n * 2 * STRIDE];
+        int count = 0, lastBucket = 0;
+        double moveCarry = 0, turnCarry = 0; // Rounding left over from earlier commands, so it doesn't add up
+        for (int i = 0; i < n; i++) {
+            double moveTime = sidesCm[i] > 0 ? calibration.moveStartupMs + sidesCm[i] * calibration.moveTimePerCm : 0;
+            int roundedMove = (int) Math.round(moveTime + moveCarry);
+            moveCarry += moveTime - roundedMove;
+            count = add(commands, count, SwiftBotShapeDrawer.LEFT_MOTOR_SPEED, SwiftBotShapeDrawer.RIGHT_MOTOR_SPEED,
+                    roundedMove, 0);
+
+            double angle = Math.abs(turnsDeg[i]);
+            double turnTime = angle > 0 ? calibration.turnStartupMs + angle * calibration.turnTimePerDegree : 0;
+            int roundedTurn = (int) Math.round(turnTime + turnCarry);
+            turnCarry += turnTime - roundedTurn;
+            if (turnsDeg[i] >= 0) {
+                count = add(commands, count, -50, 50, roundedTurn, 0); // Turn left
+            } else {
+                count = add(commands, count, 50, -50, roundedTurn, 0); // Turn right
+            }
+
+            // Report progress at each corner that reaches a new 10% step (and always at the end)
+            int progress = (i + 1) * 100 / n;
+            if (count > 0 && (progress / 10 > lastBucket || i == n - 1)) {
+                commands[count - STRIDE + PROGRESS] = progress;
+                lastBucket = progress / 10;
+            }
+        }
+        return trim(commands, count);
+    }
+
+    // Method to plan a closed polygon through a list of vertices {x, y}, starting at the first
+    // vertex facing the second and ending back at the first facing the same way
+    int[] polygon(double[][] vertices) {
+        int n = vertices.length;
+        if (n < 3) {
+            throw new IllegalArgumentException("A polygon needs at least 3 vertices");
+        }
+        double[] sides = new double[n];
+        double[] turns = new double[n];
+        for (int i = 0; i < n; i++) {
+            double[] from = vertices[i], to = vertices[(i + 1) % n], next = vertices[(i + 2) % n];
+            sides[i] = Math.hypot(to[0] - from[0], to[1] - from[1]);
+            double heading = Math.atan2(to[1] - from[1], to[0] - from[0]);
+            double nextHeading = Math.atan2(next[1] - to[1], next[0] - to[0]);
+            turns[i] = Math.toDegrees(Math.IEEEremainder(nextHeading - heading, 2 * Math.PI)); // -180 to 180
+        }
+        return polygon(sides, turns);
+    }
+
+    // Method to plan a regular polygon with n equal sides
+    int[] regularPolygon(int n, double sideCm) {
+        if (n < 3) {
+            throw new IllegalArgumentException("A polygon needs at least 3 sides");
+        }
+        double[] sides = new double[n];
+        double[] turns = new double[n];
+        Arrays.fill(sides, sideCm);
+        Arrays.fill(turns, 360.0 / n);
+        return polygon(sides, turns);
+    }
+
+    // Method to plan a triangle drawn as side a, then b, then c
+    int[] triangle(double a, double b, double c) {
+        double[] angles = triangleAngles(a, b, c);
+        // The corner after side a is between a and b (opposite c), after b it is opposite a, after c opposite b
+        double[] turns = {180 - angles[2], 180 - angles[0], 180 - angles[1]};
+        return polygon(new double[] {a, b, c}, turns);
+    }
+
+    // Method to plan an arc driven with fixed wheel speeds, split into equal segments for progress updates
+    int[] arc(int leftSpeed, int rightSpeed, int timeMs, int segments) {
+        int[] commands = new int[segments * STRIDE];
+        int count = 0;
+        for (int i = 0; i < segments; i++) {
+            int segmentTime = timeMs / segments;
+            if (i == segments - 1) {
+                segmentTime = timeMs - segmentTime * (segments - 1); // Last segment takes the remainder
+            }
+            count = add(commands, count, leftSpeed, rightSpeed, segmentTime, (i + 1) * 100 / segments);
+        }
+        return trim(commands, count);
+    }
+
+    // Method to get the interior angles of a triangle in degrees, {A, B, C} opposite sides a, b, c,
+    // using the Law of Cosines
+    static double[] triangleAngles(double a, double b, double c) {
+        double angleA = Math.toDegrees(Math.acos(clamp((b * b + c * c - a * a) / (2 * b * c))));
+        double angleB = Math.toDegrees(Math.acos(clamp((a * a + c * c - b * b) / (2 * a * c))));
+        return new double[] {angleA, angleB, 180 - angleA - angleB};
+    }
+
+    // Method to get the total motor time (ms) of a planned trajectory
+    static int totalTime(int[] commands) {
+        int total = 0;
+        for (int i = TIME; i < commands.length; i += STRIDE) {
+            total += commands[i];
+        }
+        return total;
+    }
+
+    // Method to append a command, skipping ones too short to move the motors
+    private static int add(int[] commands, int count, int left, int right, int timeMs, int progress) {
+        if (timeMs <= 0) {
+            return count;
+        }
+        commands[count + LEFT] = left;
+        commands[count + RIGHT] = right;
+        commands[count + TIME] = timeMs;
+        commands[count + PROGRESS] = progress;
+        return count + STRIDE;
+    }
+
+    // Method to cut the command array down to the commands actually used
+    private static int[] trim(int[] commands, int count) {
+        return count == commands.length ? commands : Arrays.copyOf(commands, count);
+    }
+
+    // Method to keep a cosine within -1 to 1 despite rounding
+    private static double clamp(double cos) {
+        return Math.max(-1, Math.min(1, cos));
+    }
+}
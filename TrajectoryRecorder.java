@@ -0,0 +1,261 @@
+package Swiftbot;
+
+import java.awt.Color;
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.util.*;
+
+// Motion backend wrapper that dead-reckons every motor command into the path the robot drives.
+// Each run writes into its own subfolder of the preview folder, named after the time it started
+// (like the drawing log's session), so runs never paint over or overwrite each other's previews:
+//   - an SVG preview of each shape ("<job>-<shape>-<type>.svg"), with its closure error
+//     (how far the robot ends from where the shape started)
+//   - an SVG preview of each job, with the moves between shapes shown dashed
+//   - the whole session, streamed into PNG tiles in the "session" subfolder
+// The path is dead-reckoned with a reference profile of the robot's real drive rates, measured
+// independently of the calibration in use; a shape whose closure error is over the warning limit
+// is reported straight away, so a bad or regressed calibration shows up in batch runs without
+// photographing the floor. Without a reference profile the current calibration is used, the same
+// model the planner worked from, so closure error only shows planning and rounding problems.
+class TrajectoryRecorder implements MotionBackend {
+    private static final double STEP_MS = 50; // Arcs are recorded as straight lines this long
+    private static final double PIXELS_PER_CM = 2; // Scale of the session tiles
+    private static final int TILE_SIZE = 512; // Session tile size in pixels (256 cm at 2 pixels/cm)
+    private static final int TILES_IN_MEMORY = 4; // Session tiles held in memory at once
+    private static final Color SHAPE_COLOUR = new Color(20, 60, 200);
+    private static final Color TRAVEL_COLOUR = new Color(180, 180, 180);
+    private static final String SHAPE_STYLE = "stroke:#143cc8"; // SVG style of shape paths
+    private static final String TRAVEL_STYLE = "stroke:#b4b4b4;stroke-dasharray:2,2"; // SVG style of moves between shapes
+
+    private final MotionBackend backend; // Backend doing the actual work
+    private final Path folder; // Where previews are written
+    private final double warnClosureCm; // Closure error that is reported as a problem
+    private final TiledCanvas session; // Every move of the session
+    private final DifferentialDriveModel reference; // Model of the real robot (null to use the current calibration)
+
+    private final Pose pose = new Pose(); // Dead-reckoned pose of the robot
+    private List<double[]> shapePath; // Points of the shape being drawn (null between shapes)
+    private Pose shapeStart; // Pose at the start of the shape being drawn
+    private List<List<double[]>> jobPaths; // Paths of the job being drawn, shapes and travel (null outside a job)
+    private List<Boolean> jobPathIsShape; // Whether each job path is a shape (true) or travel (false)
+    private int jobNumber = 0, shapeNumber = 0;
+    private String jobName = "shapes"; // Prefix for shape previews
+
+    // Closure error totals
+    private long shapesMeasured = 0;
+    private double totalClosureCm = 0;
+    private double worstClosureCm = 0;
+    private String worstShape = "";
+    private long shapesOverLimit = 0;
+
+    // reference: the robot's independently measured drive rates, or null to use the current calibration
+    TrajectoryRecorder(MotionBackend backend, Path folder, double warnClosureCm, CalibrationProfile reference) throws IOException {
+        this.backend = backend;
+        this.folder = createRunFolder(folder);
+        this.warnClosureCm = warnClosureCm;
+        this.reference = reference == null ? null : reference.driveModel();
+        this.session = new TiledCanvas(this.folder.resolve("session"), PIXELS_PER_CM, TILE_SIZE, TILES_IN_MEMORY);
+    }
+
+    // Method to create a new, empty subfolder for this run's previews
+    private static Path createRunFolder(Path parent) throws IOException {
+        Files.createDirectories(parent);
+        String run = new java.text.SimpleDateFormat("yyyyMMdd-HHmmss").format(new Date());
+        for (int attempt = 1; ; attempt++) {
+            try {
+                return Files.createDirectory(parent.resolve(attempt == 1 ? run : run + "-" + attempt));
+            } catch (FileAlreadyExistsException e) {
+                // Another run started in the same second, try the next name
+            }
+        }
+    }
+
+    @Override
+    public void move(int leftSpeed, int rightSpeed, int timeMs) throws InterruptedException {
+        backend.move(leftSpeed, rightSpeed, timeMs);
+        record(leftSpeed, rightSpeed, timeMs);
+    }
+
+    @Override
+    public void fillUnderlights(int[] rgb) {
+        backend.fillUnderlights(rgb);
+    }
+
+    @Override
+    public void disableUnderlights() {
+        backend.disableUnderlights();
+    }
+
+    @Override
+    public void pause(long timeMs) throws InterruptedException {
+        backend.pause(timeMs);
+    }
+
+    // Method to dead-reckon one motor command and add it to the current paths and the session image
+    private synchronized void record(int leftSpeed, int rightSpeed, int timeMs) {
+        DifferentialDriveModel model = reference != null ? reference : SwiftBotShapeDrawer.getCalibration().driveModel();
+        boolean straight = leftSpeed == rightSpeed || leftSpeed == -rightSpeed; // Lines and turns on the spot
+        int steps = straight ? 1 : Math.max(1, (int) Math.ceil(timeMs / STEP_MS));
+        List<double[]> travel = shapePath == null && jobPaths != null ? currentTravel() : null;
+
+        for (int i = 0; i < steps; i++) {
+            double x = pose.x, y = pose.y;
+            model.advance(pose, leftSpeed, rightSpeed, timeMs / (double) steps);
+            if (x == pose.x && y == pose.y) {
+                continue; // Turned on the spot
+            }
+            double[] point = {pose.x, pose.y};
+            if (shapePath != null) {
+                shapePath.add(point);
+            } else if (travel != null) {
+                travel.add(point);
+            }
+            try {
+                session.drawLine(x, y, pose.x, pose.y, shapePath != null ? SHAPE_COLOUR : TRAVEL_COLOUR);
+            } catch (IOException e) {
+                System.out.println("Error writing session preview: " + e.getMessage());
+            }
+        }
+    }
+
+    // Method to get the travel path being recorded between shapes of a job, starting a new one if needed
+    private List<double[]> currentTravel() {
+        int last = jobPaths.size() - 1;
+        if (last >= 0 && !jobPathIsShape.get(last)) {
+            return jobPaths.get(last);
+        }
+        List<double[]> travel = new ArrayList<>();
+        travel.add(new double[] {pose.x, pose.y});
+        jobPaths.add(travel);
+        jobPathIsShape.add(false);
+        return travel;
+    }
+
+    // Method to start recording a job (a scanned QR code)
+    synchronized void beginJob() {
+        jobNumber++;
+        shapeNumber = 0;
+        jobName = String.format("job-%04d", jobNumber);
+        jobPaths = new ArrayList<>();
+        jobPathIsShape = new ArrayList<>();
+    }
+
+    // Method to finish a job and write its preview
+    synchronized void endJob() {
+        if (jobPaths != null && !jobPaths.isEmpty()) {
+            List<String> styles = new ArrayList<>();
+            for (boolean isShape : jobPathIsShape) {
+                styles.add(isShape ? SHAPE_STYLE : TRAVEL_STYLE);
+            }
+            writeSvg(folder.resolve(jobName + ".svg"), jobPaths, styles, jobName);
+        }
+        jobPaths = null;
+        jobPathIsShape = null;
+        jobName = "shapes";
+    }
+
+    // Method to start recording a shape
+    synchronized void beginShape() {
+        shapeStart = pose.copy();
+        shapePath = new ArrayList<>();
+        shapePath.add(new double[] {pose.x, pose.y});
+    }
+
+    // Method to finish a shape: work out its closure error and write its preview
+    // Returns the closure error in cm
+    synchronized double endShape(String type) {
+        if (shapePath == null) {
+            return 0;
+        }
+        shapeNumber++;
+        double closureCm = shapeStart.distanceTo(pose);
+        double closureDegrees = shapeStart.headingErrorTo(pose);
+        String name = String.format("%s-%03d-%s", jobName, shapeNumber, type.toLowerCase());
+
+        shapesMeasured++;
+        totalClosureCm += closureCm;
+        if (closureCm > worstClosureCm) {
+            worstClosureCm = closureCm;
+            worstShape = name;
+        }
+        String label = String.format("%s: closure error %.2f cm, %.1f degrees", name, closureCm, closureDegrees);
+        System.out.printf("Closure error: %.2f cm, %.1f degrees%n", closureCm, closureDegrees);
+        if (closureCm > warnClosureCm) {
+            shapesOverLimit++;
+            System.out.printf("WARNING: %s does not close (over %.1f cm), check the %s.%n", name, warnClosureCm,
+                    reference != null ? "calibration" : "trajectory planning");
+        }
+
+        writeSvg(folder.resolve(name + ".svg"), Collections.singletonList(shapePath),
+                Collections.singletonList(SHAPE_STYLE), label);
+        if (jobPaths != null) {
+            jobPaths.add(shapePath);
+            jobPathIsShape.add(true);
+        }
+        shapePath = null;
+        return closureCm;
+    }
+
+    // Method to write paths to an SVG file, scaled so 1 unit is 1 cm, with the start marked green and the end red
+    private void writeSvg(Path file, List<List<double[]>> paths, List<String> styles, String title) {
+        double minX = Double.MAX_VALUE, minY = Double.MAX_VALUE, maxX = -Double.MAX_VALUE, maxY = -Double.MAX_VALUE;
+        for (List<double[]> path : paths) {
+            for (double[] point : path) {
+                minX = Math.min(minX, point[0]);
+                maxX = Math.max(maxX, point[0]);
+                minY = Math.min(minY, point[1]);
+                maxY = Math.max(maxY, point[1]);
+            }
+        }
+        double margin = 5; // cm around the drawing
+        double width = maxX - minX + 2 * margin, height = maxY - minY + 2 * margin;
+
+        StringBuilder svg = new StringBuilder();
+        svg.append(String.format(Locale.ROOT,
+                "<svg xmlns=\"http://www.w3.org/2000/svg\" width=\"%.0fmm\" height=\"%.0fmm\" viewBox=\"%.2f %.2f %.2f %.2f\">%n",
+                width * 10, height * 10, minX - margin, -maxY - margin, width, height));
+        svg.append("<title>").append(title).append("</title>\n");
+        svg.append("<g transform=\"scale(1,-1)\" fill=\"none\" stroke-width=\"0.5\" stroke-linejoin=\"round\">\n");
+        for (int i = 0; i < paths.size(); i++) {
+            svg.append("<polyline style=\"").append(styles.get(i)).append("\" points=\"");
+            for (double[] point : paths.get(i)) {
+                svg.append(String.format(Locale.ROOT, "%.2f,%.2f ", point[0], point[1]));
+            }
+            svg.append("\"/>\n");
+        }
+        double[] start = paths.get(0).get(0);
+        List<double[]> lastPath = paths.get(paths.size() - 1);
+        double[] end = lastPath.get(lastPath.size() - 1);
+        svg.append(String.format(Locale.ROOT, "<circle cx=\"%.2f\" cy=\"%.2f\" r=\"1\" fill=\"green\"/>%n", start[0], start[1]));
+        svg.append(String.format(Locale.ROOT, "<circle cx=\"%.2f\" cy=\"%.2f\" r=\"0.7\" fill=\"red\"/>%n", end[0], end[1]));
+        svg.append("</g>\n</svg>\n");
+
+        try {
+            Files.write(file, svg.toString().getBytes(StandardCharsets.UTF_8));
+        } catch (IOException e) {
+            System.out.println("Error writing preview: " + e.getMessage());
+        }
+    }
+
+    // Method to write the closure error totals
+    synchronized void writeSummary(PrintWriter writer, String prefix) {
+        if (shapesMeasured == 0) {
+            return;
+        }
+        writer.printf("%sClosure error: mean %.2f cm, worst %.2f cm (%s), %d of %d shapes over %.1f cm%n", prefix,
+                totalClosureCm / shapesMeasured, worstClosureCm, worstShape, shapesOverLimit, shapesMeasured, warnClosureCm);
+        writer.println(prefix + (reference != null ? "Dead-reckoned with the reference profile."
+                : "Dead-reckoned with the current calibration (no reference profile), so calibration problems don't show."));
+        writer.println(prefix + "Previews saved to: " + folder.toAbsolutePath());
+    }
+
+    // Method to write the session tiles still in memory
+    synchronized void close() {
+        try {
+            session.close();
+        } catch (IOException e) {
+            System.out.println("Error writing session preview: " + e.getMessage());
+        }
+    }
+}
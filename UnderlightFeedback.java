@@ -0,0 +1,168 @@
+package Swiftbot;
+
+import java.util.*;
+import java.util.concurrent.*;
+
+// Drives the underlights on a background thread, so light patterns never hold up drawing.
+//   - progress: a steady colour while a shape is being drawn
+//   - complete: three green blinks when a shape is finished
+//   - error: quick red flashes when a command is rejected
+// Starting a pattern replaces the one that is playing. When a pattern ends the lights go back
+// to the progress colour if a shape is still being drawn, otherwise off. The time completion
+// blinks play while the job carries on is measured, as the time the drawing thread no longer waits.
+class UnderlightFeedback {
+    static final int[] PROGRESS_COLOUR = {0, 0, 255}; // Blue while drawing
+    static final int[] COMPLETE_COLOUR = {0, 255, 0}; // Green for a finished shape
+    static final int[] ERROR_COLOUR = {255, 0, 0}; // Red for a rejected command
+
+    private static final int BLINK_COUNT = 3; // Number of completion blinks
+    private static final long BLINK_MS = 500; // On and off time of each completion blink
+    private static final int FLASH_COUNT = 2; // Number of error flashes
+    private static final long FLASH_MS = 200; // On and off time of each error flash
+
+    private final MotionBackend lights; // Backend that owns the underlights
+    private final ScheduledExecutorService executor;
+
+    // Pattern state, guarded by this
+    private int[] background = null; // Colour shown between patterns, null for off
+    private List<Step> pattern = Collections.emptyList(); // Pattern being played
+    private int nextStep = 0; // Index of the next step to play
+    private ScheduledFuture<?> pending; // Next scheduled step
+    private long generation = 0; // Bumped by every new pattern, so steps of a replaced one are dropped
+    private boolean measuring = false; // Whether the pattern is completion blinks that count as time saved
+    private long measureStartNanos = -1; // When the measured blinks started showing, -1 if they haven't
+    private long waitSavedNanos = 0; // Measured blink time the program carried on working through
+
+    // One step of a pattern: show a colour (or turn off) for a time
+    private static class Step {
+        final int[] colour;
+        final long durationMs;
+
+        Step(int[] colour, long durationMs) {
+            this.colour = colour;
+            this.durationMs = durationMs;
+        }
+    }
+
+    UnderlightFeedback(MotionBackend lights) {
+        this.lights = lights;
+        this.executor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "underlight-feedback");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    // Method to show the progress colour until clearProgress() is called
+    synchronized void showProgress() {
+        background = PROGRESS_COLOUR;
+        executor.execute(this::showBackground);
+    }
+
+    // Method to stop showing the progress colour, at the end of a job
+    // (completion blinks still playing after this no longer count as time saved)
+    synchronized void clearProgress() {
+        background = null;
+        stopMeasuring();
+        executor.execute(this::showBackground);
+    }
+
+    // Method to blink green to show a shape is finished (returns immediately)
+    void signalComplete() {
+        play(blink(COMPLETE_COLOUR, BLINK_COUNT, BLINK_MS), true);
+    }
+
+    // Method to flash red to show a command was rejected (returns immediately)
+    void signalError() {
+        play(blink(ERROR_COLOUR, FLASH_COUNT, FLASH_MS), false);
+    }
+
+    // Method to stop all patterns and turn the lights off
+    void close() {
+        executor.shutdownNow();
+        try {
+            executor.awaitTermination(1, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        apply(null);
+    }
+
+    // Total time (ms) completion blinks were measured playing while the program carried on with the
+    // job, which the drawing thread used to spend waiting for them
+    synchronized long getWaitSavedMs() {
+        return waitSavedNanos / 1_000_000;
+    }
+
+    // Method to add the time the measured blinks have been showing to the time saved, and stop measuring
+    private synchronized void stopMeasuring() {
+        if (measureStartNanos >= 0) {
+            waitSavedNanos += System.nanoTime() - measureStartNanos;
+        }
+        measureStartNanos = -1;
+        measuring = false;
+    }
+
+    private static List<Step> blink(int[] colour, int count, long durationMs) {
+        List<Step> steps = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            steps.add(new Step(colour, durationMs));
+            steps.add(new Step(null, durationMs));
+        }
+        return steps;
+    }
+
+    // Method to replace the playing pattern with a new one
+    // measure: whether the time the pattern plays counts as time saved
+    private synchronized void play(List<Step> steps, boolean measure) {
+        if (pending != null) {
+            pending.cancel(false);
+        }
+        stopMeasuring(); // The replaced pattern stops here
+        measuring = measure;
+        pattern = steps;
+        nextStep = 0;
+        long current = ++generation; // A step of the old pattern that is already running will see it is stale
+        pending = executor.schedule(() -> playNextStep(current), 0, TimeUnit.MILLISECONDS);
+    }
+
+    // Method run on the feedback thread: show the next step and schedule the one after it
+    // The lights are set while holding the lock, so they always follow the latest pattern
+    private synchronized void playNextStep(long stepGeneration) {
+        if (stepGeneration != generation) {
+            return; // The pattern was replaced after this step was scheduled
+        }
+        if (nextStep >= pattern.size()) {
+            stopMeasuring();
+            pending = null;
+            apply(background); // Pattern finished, go back to the background colour
+            return;
+        }
+        if (nextStep == 0 && measuring) {
+            measureStartNanos = System.nanoTime();
+        }
+        Step step = pattern.get(nextStep++);
+        pending = executor.schedule(() -> playNextStep(stepGeneration), step.durationMs, TimeUnit.MILLISECONDS);
+        apply(step.colour);
+    }
+
+    // Method run on the feedback thread: show the background colour unless a pattern is playing
+    private synchronized void showBackground() {
+        if (nextStep >= pattern.size()) {
+            apply(background);
+        }
+    }
+
+    // Method to set the lights to a colour, or turn them off for null
+    private void apply(int[] colour) {
+        try {
+            if (colour == null) {
+                lights.disableUnderlights(); // Turn off underlights
+            } else {
+                lights.fillUnderlights(colour); // Turn on underlights
+            }
+        } catch (Exception e) {
+            System.out.println("Error setting underlights: " + e.getMessage());
+        }
+    }
+}